@@ -0,0 +1,81 @@
+package disc.data;
+
+import java.util.Arrays;
+
+/**
+ * A {@link Scenario} whose {@link Instruction}s are kept as a list of chunks
+ * shared with other Scenarios in an {@link InstructionChunkStore}, rather
+ * than in an array of its own. Behaves like any other Scenario, but
+ * getInstructions() builds a new array each time it is called, so
+ * getInstruction() is the cheaper way to walk one.
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public class ChunkedScenario extends Scenario {
+
+    InstructionChunkStore store;
+    Instruction[][] chunks;
+    int[] chunkStart;
+    int length;
+
+    /**
+     * Constructs a ChunkedScenario over chunks that were stored by the given
+     * store. Use InstructionChunkStore.store() to make one.
+     */
+    ChunkedScenario(InstructionChunkStore store, String name, String[] args,
+            Instruction[][] chunks) {
+        super(name, args, null);
+        this.store = store;
+        this.chunks = chunks;
+        this.chunkStart = new int[chunks.length + 1];
+        for(int i = 0; i < chunks.length; i++)
+            chunkStart[i + 1] = chunkStart[i] + chunks[i].length;
+        this.length = chunkStart[chunks.length];
+    }
+
+    /**
+     * @return a new array of the {@link Instruction}s of the
+     *         {@link ChunkedScenario}
+     */
+    @Override
+    public Instruction[] getInstructions() {
+        Instruction[] out = new Instruction[length];
+        for(int i = 0; i < chunks.length; i++)
+            System.arraycopy(chunks[i], 0, out, chunkStart[i],
+                    chunks[i].length);
+        return out;
+    }
+
+    /**
+     * Finds the chunk holding the given index by binary search.
+     */
+    @Override
+    public Instruction getInstruction(int index) {
+        if(index < 0 || index >= length)
+            throw new ArrayIndexOutOfBoundsException(index);
+        int c = Arrays.binarySearch(chunkStart, 0, chunks.length, index);
+        if(c < 0) c = -c - 2;
+        return chunks[c][index - chunkStart[c]];
+    }
+
+    @Override
+    public int getNumberOfInstructions() {
+        return length;
+    }
+
+    /**
+     * @return the number of chunks the {@link ChunkedScenario} is made of
+     */
+    public int getNumberOfChunks() {
+        return chunks.length;
+    }
+
+    /**
+     * @return a new {@link ChunkedScenario} sharing the same chunks
+     */
+    @Override
+    public ChunkedScenario clone() {
+        return new ChunkedScenario(store, scenarioName, args, chunks);
+    }
+}
@@ -0,0 +1,253 @@
+package disc.data;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link WaypointMap} that can be read and edited from many threads at once.
+ * The Waypoints are kept in an immutable trie which is swapped out whole on
+ * every edit, so reads never lock, edits only copy the few trie nodes on the
+ * path to the changed Waypoint, and a consistent copy of the whole map can be
+ * taken in constant time.
+ * <p>
+ * snapshot() gives a read-only {@link ConcurrentWaypointMap} that never sees
+ * later edits, and clone() gives an editable one that starts out sharing all
+ * of its data. Editing a snapshot throws an UnsupportedOperationException.
+ *
+ * @author Liam Williams
+ * @version 0.1.1
+ */
+public class ConcurrentWaypointMap extends WaypointMap {
+
+    AtomicReference<WaypointTrie> root;
+    boolean readOnly = false;
+
+    /**
+     * Blank constructor for creating an empty {@link ConcurrentWaypointMap}
+     */
+    public ConcurrentWaypointMap() {
+        this(WaypointTrie.EMPTY, false, false);
+    }
+
+    /**
+     * Creates a {@link ConcurrentWaypointMap} from a .waypoint file.
+     *
+     * @param input
+     *            The file to be read
+     * @throws FileNotFoundException
+     *             If the file doesn't exist
+     */
+    public ConcurrentWaypointMap(File input) throws FileNotFoundException {
+        this();
+        parse(new Scanner(input));
+    }
+
+    /**
+     * Creates a {@link ConcurrentWaypointMap} from a String representation.
+     *
+     * @param input
+     *            The String to be read
+     */
+    public ConcurrentWaypointMap(String input) {
+        this();
+        parse(new Scanner(input));
+    }
+
+    /**
+     * Creates a {@link ConcurrentWaypointMap} holding a copy of the given
+     * {@link WaypointMap}'s Waypoints.
+     *
+     * @param map
+     *            The WaypointMap to copy
+     */
+    public ConcurrentWaypointMap(WaypointMap map) {
+        this();
+        inDegrees = map.inDegrees;
+        if(map instanceof ConcurrentWaypointMap)
+            root.set(((ConcurrentWaypointMap) map).root.get());
+        else for(Map.Entry<String, Waypoint> e : map.m.entrySet())
+            addWaypoint(e.getKey(), e.getValue());
+    }
+
+    /**
+     * Constructor for snapshots and cloning.
+     */
+    ConcurrentWaypointMap(WaypointTrie trie, boolean inDegrees,
+            boolean readOnly) {
+        this.root = new AtomicReference<>(trie);
+        this.inDegrees = inDegrees;
+        this.m = new TrieMap();
+        this.readOnly = readOnly;
+    }
+
+    @Override
+    public Waypoint get(String name) {
+        if(name != null) return root.get().get(name);
+        else return null;
+    }
+
+    @Override
+    public void addWaypoint(Waypoint toAdd) {
+        addWaypoint(toAdd.getName(), toAdd);
+    }
+
+    @Override
+    public void removeWaypoint(String waypointName) {
+        checkWritable();
+        WaypointTrie t;
+        do {
+            t = root.get();
+        } while(!root.compareAndSet(t, t.remove(waypointName)));
+    }
+
+    /**
+     * Helper method that stores a {@link Waypoint} under a name.
+     */
+    private Waypoint addWaypoint(String name, Waypoint toAdd) {
+        checkWritable();
+        WaypointTrie t;
+        do {
+            t = root.get();
+        } while(!root.compareAndSet(t, t.put(name, toAdd)));
+        return t.get(name);
+    }
+
+    /**
+     * Takes a read-only view of the {@link ConcurrentWaypointMap} as it is
+     * right now. Takes constant time, no matter how big the map is.
+     *
+     * @return a ConcurrentWaypointMap that will never change
+     */
+    public ConcurrentWaypointMap snapshot() {
+        if(readOnly) return this;
+        return new ConcurrentWaypointMap(root.get(), inDegrees, true);
+    }
+
+    /**
+     * @return true if this is a snapshot, and so cannot be edited
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @return The number of {@link Waypoint}s in the map
+     */
+    public int size() {
+        return root.get().size;
+    }
+
+    /**
+     * Appends the Constructor-readable representation of the
+     * {@link ConcurrentWaypointMap}, as of a single point in time.
+     */
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        if(inDegrees) out.append("#$DEGREES\r\n");
+        else out.append("#$RADIANS\r\n");
+        for(Waypoint w : root.get()) {
+            w.writeTo(out);
+            out.append("\r\n");
+        }
+    }
+
+    /**
+     * Returns the fingerprint of the {@link ConcurrentWaypointMap} as of a
+     * single point in time.
+     */
+    @Override
+    public long fingerprint() {
+        return fingerprintOf(root.get(), inDegrees);
+    }
+
+    /**
+     * Returns a new, editable {@link ConcurrentWaypointMap} that starts out
+     * sharing all of this one's data.
+     */
+    @Override
+    public ConcurrentWaypointMap clone() {
+        return new ConcurrentWaypointMap(root.get(), inDegrees, false);
+    }
+
+    /**
+     * Helper method that stops snapshots from being edited.
+     */
+    private void checkWritable() {
+        if(readOnly) throw new UnsupportedOperationException(
+                "Cannot edit a WaypointMap snapshot.");
+    }
+
+    /**
+     * Map view over the current trie, so the inherited {@link WaypointMap}
+     * methods keep working.
+     */
+    class TrieMap extends AbstractMap<String, Waypoint> {
+
+        @Override
+        public Waypoint get(Object key) {
+            return (key instanceof String) ? ConcurrentWaypointMap.this
+                    .get((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Waypoint put(String key, Waypoint value) {
+            return addWaypoint(key, value);
+        }
+
+        @Override
+        public Waypoint remove(Object key) {
+            Waypoint w = get(key);
+            if(w != null) removeWaypoint((String) key);
+            return w;
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentWaypointMap.this.size();
+        }
+
+        @Override
+        public Set<Map.Entry<String, Waypoint>> entrySet() {
+            final WaypointTrie t = root.get();
+            return new AbstractSet<Map.Entry<String, Waypoint>>() {
+
+                @Override
+                public Iterator<Map.Entry<String, Waypoint>> iterator() {
+                    final Iterator<Waypoint> iter = t.iterator();
+                    return new Iterator<Map.Entry<String, Waypoint>>() {
+
+                        @Override
+                        public boolean hasNext() {
+                            return iter.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, Waypoint> next() {
+                            Waypoint w = iter.next();
+                            return new AbstractMap.SimpleImmutableEntry<>(
+                                    w.getName(), w);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return t.size;
+                }
+            };
+        }
+    }
+}
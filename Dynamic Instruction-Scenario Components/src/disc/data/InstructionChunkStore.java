@@ -0,0 +1,164 @@
+package disc.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import disc.util.Fingerprint;
+
+/**
+ * Shared storage for families of {@link Scenario}s that repeat long runs of
+ * the same {@link Instruction}s, such as identical warm-up or docking
+ * sections. Each Scenario is cut into chunks and every distinct chunk is
+ * stored once, so a run shared by many Scenarios costs about as much as a
+ * single copy of it. The Scenarios handed back are {@link ChunkedScenario}s,
+ * which read straight from the shared chunks.
+ * <p>
+ * Chunks are cut by content rather than by position: a chunk ends after any
+ * Instruction whose fingerprint has its low bits clear, so the same run of
+ * Instructions is cut the same way wherever it appears. Two Scenarios that
+ * share a prefix, a suffix, or a section in the middle end up pointing at the
+ * same chunks for it, give or take a chunk at each edge.
+ * <p>
+ * Safe to use from several threads at once.
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public class InstructionChunkStore {
+
+    static final int DEFAULT_MIN_CHUNK = 2;
+    static final int DEFAULT_AVERAGE_CHUNK = 8;
+    static final int DEFAULT_MAX_CHUNK = 64;
+
+    ConcurrentHashMap<Chunk, Instruction[]> chunks = new ConcurrentHashMap<>();
+    AtomicLong stored = new AtomicLong();
+    int minChunk;
+    int maxChunk;
+    long mask;
+
+    /**
+     * Creates a store with chunks of 2 to 64 {@link Instruction}s, 8 on
+     * average.
+     */
+    public InstructionChunkStore() {
+        this(DEFAULT_MIN_CHUNK, DEFAULT_AVERAGE_CHUNK, DEFAULT_MAX_CHUNK);
+    }
+
+    /**
+     * Creates a store with the given chunk sizes. Smaller chunks find more
+     * sharing but cost more per Instruction.
+     *
+     * @param minChunk
+     *            The fewest Instructions in a chunk, other than the last one
+     * @param averageChunk
+     *            The number of Instructions to aim for, rounded up to a power
+     *            of two
+     * @param maxChunk
+     *            The most Instructions in a chunk
+     */
+    public InstructionChunkStore(int minChunk, int averageChunk,
+            int maxChunk) {
+        if(minChunk < 1 || maxChunk < minChunk)
+            throw new IllegalArgumentException("Invalid chunk sizes.");
+        this.minChunk = minChunk;
+        this.maxChunk = maxChunk;
+        long avg = Long.highestOneBit(Math.max(1, averageChunk - 1)) << 1;
+        this.mask = avg - 1;
+    }
+
+    /**
+     * Stores the {@link Instruction}s of the given {@link Scenario}, sharing
+     * any chunks that are already stored.
+     *
+     * @param s
+     *            The Scenario to store
+     * @return A ChunkedScenario with the same name, args, and Instructions
+     */
+    public ChunkedScenario store(Scenario s) {
+        if(s instanceof ChunkedScenario
+                && ((ChunkedScenario) s).store == this)
+            return (ChunkedScenario) s;
+        int n = s.getNumberOfInstructions();
+        ArrayList<Instruction[]> parts = new ArrayList<>();
+        int start = 0;
+        for(int i = 0; i < n; i++) {
+            int length = i + 1 - start;
+            if(i == n - 1 || length >= maxChunk || (length >= minChunk
+                    && (Fingerprint.mix(s.getInstruction(i).fingerprint())
+                            & mask) == 0)) {
+                Instruction[] part = new Instruction[length];
+                for(int j = 0; j < length; j++)
+                    part[j] = s.getInstruction(start + j);
+                parts.add(intern(part));
+                start = i + 1;
+            }
+        }
+        return new ChunkedScenario(this, s.getName(), s.getArgs(),
+                parts.toArray(new Instruction[parts.size()][]));
+    }
+
+    /**
+     * @return The number of distinct chunks stored
+     */
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * @return The number of {@link Instruction}s stored across every chunk,
+     *         counting each chunk once
+     */
+    public long getStoredInstructionCount() {
+        return stored.get();
+    }
+
+    /**
+     * Forgets every chunk. Scenarios already stored keep theirs.
+     */
+    public void clear() {
+        chunks.clear();
+        stored.set(0);
+    }
+
+    /**
+     * Helper method that returns the stored copy of a chunk, storing it if it
+     * is new.
+     */
+    private Instruction[] intern(Instruction[] part) {
+        Chunk key = new Chunk(part);
+        Instruction[] p = chunks.putIfAbsent(key, part);
+        if(p != null) return p;
+        stored.addAndGet(part.length);
+        return part;
+    }
+
+    /**
+     * Key for looking up a chunk by its Instructions.
+     */
+    static final class Chunk {
+
+        final Instruction[] part;
+        final int hash;
+
+        Chunk(Instruction[] part) {
+            this.part = part;
+            Fingerprint f = new Fingerprint().add(part.length);
+            for(Instruction i : part)
+                f.add(i.fingerprint());
+            this.hash = Fingerprint.fold(f.get());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Chunk && ((Chunk) o).hash == hash
+                    && Arrays.equals(((Chunk) o).part, part);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package disc.data;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A position in an {@link InstructionSequence}. Creating one costs a single
+ * small object however long the sequence is, and walking it allocates
+ * nothing, so every run of a shared {@link Scenario} can have its own cursor
+ * over the same Instructions. A cursor belongs to one thread; the sequence
+ * under it can be shared by any number of them.
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public class InstructionCursor implements Iterator<Instruction> {
+
+    final InstructionSequence sequence;
+    final int length;
+    int position = 0;
+
+    /**
+     * Creates a cursor at the start of the given sequence.
+     *
+     * @param sequence
+     *            The InstructionSequence to walk
+     */
+    public InstructionCursor(InstructionSequence sequence) {
+        this.sequence = sequence;
+        this.length = sequence.getNumberOfInstructions();
+    }
+
+    /**
+     * @return true if there are Instructions left
+     */
+    @Override
+    public boolean hasNext() {
+        return position < length;
+    }
+
+    /**
+     * @return the next {@link Instruction}, moving past it
+     */
+    @Override
+    public Instruction next() {
+        if(position >= length) throw new NoSuchElementException();
+        return sequence.getInstruction(position++);
+    }
+
+    /**
+     * @return the next {@link Instruction} without moving past it, or null if
+     *         there are none left
+     */
+    public Instruction peek() {
+        return peek(0);
+    }
+
+    /**
+     * @param ahead
+     *            How many Instructions past the next one to look
+     * @return the {@link Instruction} that many places after the next one, or
+     *         null if the sequence ends first
+     */
+    public Instruction peek(int ahead) {
+        int i = position + ahead;
+        return i >= 0 && i < length ? sequence.getInstruction(i) : null;
+    }
+
+    /**
+     * @return the index of the next {@link Instruction}
+     */
+    public int position() {
+        return position;
+    }
+
+    /**
+     * Moves the cursor so the given index is next. Seeking to length() ends
+     * the run.
+     *
+     * @param index
+     *            The index to move to
+     */
+    public void seek(int index) {
+        if(index < 0 || index > length)
+            throw new IndexOutOfBoundsException("Index: " + index);
+        position = index;
+    }
+
+    /**
+     * @return the number of Instructions in the sequence
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return the number of Instructions left
+     */
+    public int remaining() {
+        return length - position;
+    }
+
+    /**
+     * @return the sequence under this cursor
+     */
+    public InstructionSequence getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return a new cursor over the same sequence at the same position
+     */
+    public InstructionCursor copy() {
+        InstructionCursor c = new InstructionCursor(sequence);
+        c.position = position;
+        return c;
+    }
+}
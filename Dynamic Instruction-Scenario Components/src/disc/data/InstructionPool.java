@@ -0,0 +1,84 @@
+package disc.data;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Flyweight pool for {@link Instruction}s and the Strings inside them. Large
+ * Scenario libraries repeat the same few lines over and over, so a parser
+ * given a pool hands out one shared Instruction per distinct line, and one
+ * shared String per distinct target, arg, or Scenario name, instead of a
+ * fresh copy each time.
+ * <p>
+ * Pooled Instructions are shared between every Scenario that uses them, so
+ * their args must never be changed. Safe to use from several threads at once.
+ *
+ * @author Liam Williams
+ * @version 0.1.1
+ */
+public class InstructionPool {
+
+    ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+    ConcurrentHashMap<Instruction, Instruction> instructions =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Returns the pooled copy of the given String, adding it if it isn't
+     * there yet.
+     *
+     * @param s
+     *            The String to intern
+     * @return The pooled String, or null if s was null
+     */
+    public String intern(String s) {
+        if(s == null) return null;
+        String p = strings.putIfAbsent(s, s);
+        return p == null ? s : p;
+    }
+
+    /**
+     * Returns the pooled {@link Instruction} equal to the given one, adding it
+     * if it isn't there yet. A newly added Instruction has its target and args
+     * interned as well.
+     *
+     * @param inst
+     *            The Instruction to intern
+     * @return The pooled Instruction
+     */
+    public Instruction intern(Instruction inst) {
+        Instruction p = instructions.get(inst);
+        if(p != null) return p;
+        inst.target = intern(inst.target);
+        if(inst.args != null)
+            for(int i = 0; i < inst.args.length; i++)
+                inst.args[i] = intern(inst.args[i]);
+        p = instructions.putIfAbsent(inst, inst);
+        return p == null ? inst : p;
+    }
+
+    /**
+     * Parses a line of a Scenario into a pooled {@link Instruction}. The line
+     * itself is not kept, only the Instruction and its Strings.
+     *
+     * @param line
+     *            The trimmed line to parse
+     * @return The pooled Instruction
+     */
+    public Instruction parse(String line) {
+        return intern(new Instruction(line));
+    }
+
+    /**
+     * @return The number of distinct {@link Instruction}s in the pool
+     */
+    public int size() {
+        return instructions.size();
+    }
+
+    /**
+     * Empties the pool. Instructions already handed out are not affected.
+     */
+    public void clear() {
+        strings.clear();
+        instructions.clear();
+    }
+}
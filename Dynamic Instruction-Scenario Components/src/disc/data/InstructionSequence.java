@@ -0,0 +1,55 @@
+package disc.data;
+
+/**
+ * Read-only, indexed view of a run of {@link Instruction}s, such as a
+ * {@link Scenario}. Many {@link InstructionCursor}s can walk the same
+ * sequence at once, each keeping only its own position, so running a
+ * sequence never copies it.
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public interface InstructionSequence {
+
+    /**
+     * @param index
+     *            The index of the {@link Instruction}
+     * @return the Instruction at the given index
+     */
+    Instruction getInstruction(int index);
+
+    /**
+     * @return the number of {@link Instruction}s in the sequence
+     */
+    int getNumberOfInstructions();
+
+    /**
+     * @return a new {@link InstructionCursor} at the start of the sequence
+     */
+    default InstructionCursor cursor() {
+        return new InstructionCursor(this);
+    }
+
+    /**
+     * Wraps an array in an {@link InstructionSequence} without copying it.
+     * The array must not be changed afterwards.
+     *
+     * @param instructions
+     *            The Instructions of the sequence
+     * @return The sequence
+     */
+    static InstructionSequence of(Instruction... instructions) {
+        return new InstructionSequence() {
+
+            @Override
+            public Instruction getInstruction(int index) {
+                return instructions[index];
+            }
+
+            @Override
+            public int getNumberOfInstructions() {
+                return instructions.length;
+            }
+        };
+    }
+}
@@ -0,0 +1,231 @@
+package disc.data;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import disc.data.Instruction.InstructionType;
+
+/**
+ * A bounded queue of {@link Instruction}s that arrive while they are being
+ * run, such as commands from a teleoperation or supervision channel. An
+ * Interpreter made with one takes Instructions from it as they come, and
+ * finishes once it is closed and empty.
+ * <p>
+ * The queue holds at most a fixed number of Instructions. Once it is full,
+ * put() and putLine() block the sender and offer() and offerLine() wait up to
+ * the given time and then give up, so a burst of commands slows the sender
+ * down instead of growing without bound.
+ * <p>
+ * Any number of threads can send; one thread should take. Every Instruction
+ * a sender manages to add is run, even if the stream is closed while it is
+ * being added: the end of the stream is only marked once every send that
+ * started before close() has finished.
+ *
+ * @author Liam Williams
+ * @version 0.1.1
+ */
+public class InstructionStream {
+
+    static final Instruction END = new Instruction(InstructionType.DELIMITER,
+            new String[] {"stop", ""});
+
+    final ArrayBlockingQueue<Instruction> queue;
+    volatile boolean closed = false;
+    int sending = 0;
+
+    /**
+     * Creates a stream that holds up to the given number of
+     * {@link Instruction}s.
+     *
+     * @param capacity
+     *            The most Instructions waiting to be run
+     */
+    public InstructionStream(int capacity) {
+        queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Adds an {@link Instruction}, waiting for room if the stream is full.
+     *
+     * @param inst
+     *            The Instruction to add
+     * @throws InterruptedException
+     *             If interrupted while waiting
+     * @throws IllegalStateException
+     *             If the stream is closed
+     */
+    public void put(Instruction inst) throws InterruptedException {
+        beginSend();
+        try {
+            queue.put(inst);
+        } finally {
+            endSend();
+        }
+    }
+
+    /**
+     * Adds an {@link Instruction}, waiting up to the given time for room if
+     * the stream is full.
+     *
+     * @param inst
+     *            The Instruction to add
+     * @param timeout
+     *            How long to wait
+     * @param unit
+     *            The unit of the timeout
+     * @return true if it was added, false if the stream stayed full
+     * @throws InterruptedException
+     *             If interrupted while waiting
+     * @throws IllegalStateException
+     *             If the stream is closed
+     */
+    public boolean offer(Instruction inst, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        beginSend();
+        try {
+            return queue.offer(inst, timeout, unit);
+        } finally {
+            endSend();
+        }
+    }
+
+    /**
+     * Parses a line of a Scenario and adds it, waiting for room if the stream
+     * is full. Blank lines and comments are skipped.
+     *
+     * @param line
+     *            The line to add
+     * @throws InterruptedException
+     *             If interrupted while waiting
+     * @throws IllegalArgumentException
+     *             If the line is not an Instruction
+     * @throws IllegalStateException
+     *             If the stream is closed
+     */
+    public void putLine(String line) throws InterruptedException {
+        Instruction inst = parse(line);
+        if(inst != null) put(inst);
+    }
+
+    /**
+     * Parses a line of a Scenario and adds it, waiting up to the given time
+     * for room if the stream is full. Blank lines and comments are skipped.
+     *
+     * @param line
+     *            The line to add
+     * @param timeout
+     *            How long to wait
+     * @param unit
+     *            The unit of the timeout
+     * @return true if it was added or skipped, false if the stream stayed full
+     * @throws InterruptedException
+     *             If interrupted while waiting
+     * @throws IllegalArgumentException
+     *             If the line is not an Instruction
+     * @throws IllegalStateException
+     *             If the stream is closed
+     */
+    public boolean offerLine(String line, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        Instruction inst = parse(line);
+        return inst == null || offer(inst, timeout, unit);
+    }
+
+    /**
+     * Closes the stream. Instructions already in it, or being added, are
+     * still run, then the Interpreter taking from it finishes.
+     */
+    public synchronized void close() {
+        if(closed) return;
+        closed = true;
+        if(sending == 0) queue.offer(END);
+    }
+
+    /**
+     * @return true if the stream has been closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Takes the next {@link Instruction}, waiting for one to arrive.
+     *
+     * @return The next Instruction, or null once the stream is closed and
+     *         empty
+     * @throws InterruptedException
+     *             If interrupted while waiting
+     */
+    public Instruction take() throws InterruptedException {
+        Instruction inst = queue.poll();
+        if(inst == null) {
+            synchronized(this) {
+                if(closed && sending == 0 && queue.isEmpty()) return null;
+            }
+            inst = queue.take();
+        }
+        return inst == END ? null : inst;
+    }
+
+    /**
+     * @return the next {@link Instruction} without taking it, or null if
+     *         there isn't one waiting
+     */
+    public Instruction peek() {
+        Instruction inst = queue.peek();
+        return inst == END ? null : inst;
+    }
+
+    /**
+     * @return the next {@link Instruction}, or null if there isn't one waiting
+     */
+    public Instruction poll() {
+        Instruction inst = queue.peek();
+        return inst == null || inst == END ? null : queue.poll();
+    }
+
+    /**
+     * @return the number of {@link Instruction}s waiting to be run
+     */
+    public int size() {
+        int n = queue.size();
+        return queue.contains(END) ? n - 1 : n;
+    }
+
+    /**
+     * @return the number of {@link Instruction}s that can be added without
+     *         waiting
+     */
+    public int remainingCapacity() {
+        return closed ? 0 : queue.remainingCapacity();
+    }
+
+    /**
+     * Helper method that starts a send, throwing if the stream is closed.
+     */
+    private synchronized void beginSend() {
+        if(closed) throw new IllegalStateException("Stream is closed.");
+        sending++;
+    }
+
+    /**
+     * Helper method that finishes a send, marking the end of the stream if
+     * it was closed during the last one.
+     */
+    private synchronized void endSend() {
+        if(--sending == 0 && closed) queue.offer(END);
+    }
+
+    /**
+     * Helper method that parses a line, returning null for blank lines and
+     * comments.
+     */
+    private static Instruction parse(String line) {
+        String tmp = line.trim();
+        if(tmp.isEmpty() || tmp.startsWith("#")) return null;
+        Instruction inst = new Instruction(tmp);
+        if(inst.getT() == null)
+            throw new IllegalArgumentException("Not an Instruction: " + tmp);
+        return inst;
+    }
+}
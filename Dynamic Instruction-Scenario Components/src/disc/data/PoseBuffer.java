@@ -0,0 +1,135 @@
+package disc.data;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Shared holder for a robot's current pose, written by one thread (eg a sensor
+ * loop) and read by any number of others. Uses a sequence lock, so reading
+ * never blocks the writer and neither side takes a lock or allocates.
+ * <p>
+ * The writer bumps the sequence number to an odd value, stores x, y, z,
+ * heading, roll, and pitch, then bumps it to an even value. A reader copies the
+ * six values between two reads of the sequence number and retries if it was
+ * odd or changed, so every snapshot is from a single write.
+ * <p>
+ * Only one thread may write at a time.
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public class PoseBuffer {
+
+    static final int X = 0, Y = 1, Z = 2, HEADING = 3, ROLL = 4, PITCH = 5;
+
+    volatile long seq = 0;
+    AtomicLongArray pose = new AtomicLongArray(6);
+
+    /**
+     * Creates a {@link PoseBuffer} with every value at 0.
+     */
+    public PoseBuffer() {}
+
+    /**
+     * Creates a {@link PoseBuffer} holding the pose of the given
+     * {@link Waypoint}.
+     *
+     * @param initial
+     *            The starting pose
+     */
+    public PoseBuffer(Waypoint initial) {
+        write(initial);
+    }
+
+    /**
+     * Publishes a new pose. Must only be called from the writing thread.
+     */
+    public void write(double x, double y, double z, double heading,
+            double roll, double pitch) {
+        long s = seq;
+        seq = s + 1;
+        pose.set(X, Double.doubleToRawLongBits(x));
+        pose.set(Y, Double.doubleToRawLongBits(y));
+        pose.set(Z, Double.doubleToRawLongBits(z));
+        pose.set(HEADING, Double.doubleToRawLongBits(heading));
+        pose.set(ROLL, Double.doubleToRawLongBits(roll));
+        pose.set(PITCH, Double.doubleToRawLongBits(pitch));
+        seq = s + 2;
+    }
+
+    /**
+     * Publishes the pose of the given {@link Waypoint}. Must only be called
+     * from the writing thread.
+     *
+     * @param w
+     *            The Waypoint or Position to copy the pose of
+     */
+    public void write(Waypoint w) {
+        write(w.x, w.y, w.z, w.heading, w.roll, w.pitch);
+    }
+
+    /**
+     * Copies a consistent snapshot of the pose into the given array, in the
+     * order x, y, z, heading, roll, pitch.
+     *
+     * @param out
+     *            An array of at least 6 doubles
+     * @return The version of the snapshot, as returned by getVersion()
+     */
+    public long read(double[] out) {
+        long s;
+        do {
+            s = seq;
+            if((s & 1) != 0) continue;
+            for(int i = 0; i < 6; i++)
+                out[i] = Double.longBitsToDouble(pose.get(i));
+        } while((s & 1) != 0 || s != seq);
+        return s >>> 1;
+    }
+
+    /**
+     * Copies a consistent snapshot of the pose into the given
+     * {@link Position}. Leaves the Position's name alone.
+     *
+     * @param into
+     *            The Position to fill
+     * @return The filled Position
+     */
+    public Position read(Position into) {
+        long s;
+        do {
+            s = seq;
+            if((s & 1) != 0) continue;
+            into.x = Double.longBitsToDouble(pose.get(X));
+            into.y = Double.longBitsToDouble(pose.get(Y));
+            into.z = Double.longBitsToDouble(pose.get(Z));
+            into.heading = Double.longBitsToDouble(pose.get(HEADING));
+            into.roll = Double.longBitsToDouble(pose.get(ROLL));
+            into.pitch = Double.longBitsToDouble(pose.get(PITCH));
+        } while((s & 1) != 0 || s != seq);
+        return into;
+    }
+
+    /**
+     * @return The number of poses written so far. Readers can compare this
+     *         against an earlier value to see if the pose has changed.
+     */
+    public long getVersion() {
+        return seq >>> 1;
+    }
+
+    /**
+     * @return a new {@link Position} holding a snapshot of the current pose.
+     *         Allocates, so prefer read() in tight loops.
+     */
+    public Position toPosition() {
+        return read(new Position(0, 0));
+    }
+
+    /**
+     * @return The current pose in {@link Waypoint} String format, with no name.
+     */
+    @Override
+    public String toString() {
+        return toPosition().toString();
+    }
+}
@@ -0,0 +1,281 @@
+package disc.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Fixed-capacity ring buffer of timestamped poses, for recording telemetry
+ * history without creating an object per sample. Samples are stored off-heap
+ * in a direct ByteBuffer as fixed-size records:<br>
+ * <br>
+ * time (long), x, y, z, heading, roll, pitch (doubles)<br>
+ * <br>
+ * all big-endian, 56 bytes per record. Once full, each new sample overwrites
+ * the oldest one.
+ * <p>
+ * Timestamps must not go backwards, which lets time-range lookups use a binary
+ * search. The units are up to the caller (eg System.nanoTime() or
+ * milliseconds).
+ * <p>
+ * Samples are indexed from 0 (the oldest kept) to size() - 1 (the newest).
+ * writeTo() sends records straight from the off-heap buffer to a channel, so
+ * exporting to a FileChannel does not copy them onto the heap.
+ * <p>
+ * Not thread-safe; guard it externally if it is shared.
+ *
+ * @author Liam Williams
+ * @version 0.1.1
+ */
+public class PoseHistory {
+
+    /**
+     * The size in bytes of a single record.
+     */
+    public static final int RECORD_SIZE = 56;
+
+    ByteBuffer buf;
+    int capacity;
+    int head = 0;
+    int size = 0;
+    long lastTime = Long.MIN_VALUE;
+
+    /**
+     * Creates an empty {@link PoseHistory}, allocating all of its storage
+     * off-heap up front.
+     *
+     * @param capacity
+     *            The number of samples to keep
+     */
+    public PoseHistory(int capacity) {
+        if(capacity < 1 || capacity > Integer.MAX_VALUE / RECORD_SIZE)
+            throw new IllegalArgumentException(
+                    "Invalid capacity: " + capacity);
+        this.capacity = capacity;
+        buf = ByteBuffer.allocateDirect(capacity * RECORD_SIZE);
+    }
+
+    /**
+     * Records the pose of the given {@link Waypoint} or {@link Position}.
+     *
+     * @param time
+     *            The time of the sample
+     * @param p
+     *            The pose to record
+     */
+    public void record(long time, Waypoint p) {
+        record(time, p.x, p.y, p.z, p.heading, p.roll, p.pitch);
+    }
+
+    /**
+     * Records a pose.
+     *
+     * @param time
+     *            The time of the sample, no earlier than the last one
+     *            recorded
+     */
+    public void record(long time, double x, double y, double z,
+            double heading, double roll, double pitch) {
+        if(time < lastTime) throw new IllegalArgumentException(
+                "Sample time " + time + " is before " + lastTime);
+        int at = head * RECORD_SIZE;
+        buf.putLong(at, time);
+        buf.putDouble(at + 8, x);
+        buf.putDouble(at + 16, y);
+        buf.putDouble(at + 24, z);
+        buf.putDouble(at + 32, heading);
+        buf.putDouble(at + 40, roll);
+        buf.putDouble(at + 48, pitch);
+        lastTime = time;
+        head = (head + 1) % capacity;
+        if(size < capacity) size++;
+    }
+
+    /**
+     * @return The number of samples currently kept
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The maximum number of samples kept
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @param i
+     *            The index of the sample, 0 being the oldest kept
+     * @return The time of the sample
+     */
+    public long getTime(int i) {
+        return buf.getLong(offsetOf(i));
+    }
+
+    /**
+     * Copies the pose of a sample into the given array, in the order x, y, z,
+     * heading, roll, pitch.
+     *
+     * @param i
+     *            The index of the sample, 0 being the oldest kept
+     * @param out
+     *            The array to copy into
+     * @param outOffset
+     *            Where in the array to start
+     * @return The time of the sample
+     */
+    public long read(int i, double[] out, int outOffset) {
+        int at = offsetOf(i);
+        for(int j = 0; j < 6; j++)
+            out[outOffset + j] = buf.getDouble(at + 8 + j * 8);
+        return buf.getLong(at);
+    }
+
+    /**
+     * Copies the pose of a sample into the given {@link Position}. Leaves the
+     * Position's name alone.
+     *
+     * @param i
+     *            The index of the sample, 0 being the oldest kept
+     * @param into
+     *            The Position to fill
+     * @return The time of the sample
+     */
+    public long read(int i, Position into) {
+        int at = offsetOf(i);
+        into.x = buf.getDouble(at + 8);
+        into.y = buf.getDouble(at + 16);
+        into.z = buf.getDouble(at + 24);
+        into.heading = buf.getDouble(at + 32);
+        into.roll = buf.getDouble(at + 40);
+        into.pitch = buf.getDouble(at + 48);
+        return buf.getLong(at);
+    }
+
+    /**
+     * Finds the first sample at or after the given time.
+     *
+     * @param time
+     *            The time to search for
+     * @return The index of the sample, or size() if every sample is earlier
+     */
+    public int indexOf(long time) {
+        int lo = 0, hi = size;
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if(getTime(mid) < time) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Copies the samples from "from" to "to" (both inclusive) into the given
+     * arrays, stopping early if they fill up. Poses are packed six to a
+     * sample, in the same order as read(). Nothing past the last sample
+     * copied is written to either array.
+     *
+     * @param from
+     *            The earliest time to copy
+     * @param to
+     *            The latest time to copy
+     * @param times
+     *            The array to copy times into
+     * @param poses
+     *            The array to copy poses into, six doubles per sample
+     * @return The number of samples copied
+     */
+    public int query(long from, long to, long[] times, double[] poses) {
+        int n = 0;
+        for(int i = indexOf(from); i < size && n < times.length
+                && (n + 1) * 6 <= poses.length; i++) {
+            long t = getTime(i);
+            if(t > to) break;
+            read(i, poses, n * 6);
+            times[n++] = t;
+        }
+        return n;
+    }
+
+    /**
+     * Writes every kept sample, oldest first, to the given channel as raw
+     * records.
+     *
+     * @param ch
+     *            The channel to write to
+     * @return The number of samples written
+     * @throws IOException
+     *             If the channel cannot be written to
+     */
+    public int writeTo(WritableByteChannel ch) throws IOException {
+        return writeTo(ch, 0, size);
+    }
+
+    /**
+     * Writes the samples from "from" to "to" (both inclusive), oldest first,
+     * to the given channel as raw records.
+     *
+     * @param ch
+     *            The channel to write to
+     * @param from
+     *            The earliest time to write
+     * @param to
+     *            The latest time to write
+     * @return The number of samples written
+     * @throws IOException
+     *             If the channel cannot be written to
+     */
+    public int writeTo(WritableByteChannel ch, long from, long to)
+            throws IOException {
+        int start = indexOf(from);
+        int end = (to == Long.MAX_VALUE) ? size : indexOf(to + 1);
+        return writeTo(ch, start, end);
+    }
+
+    /**
+     * Helper method that writes the samples from index start up to (not
+     * including) end, in at most two slices of the buffer.
+     */
+    private int writeTo(WritableByteChannel ch, int start, int end)
+            throws IOException {
+        if(start >= end) return 0;
+        int first = offsetOf(start) / RECORD_SIZE;
+        int count = end - start;
+        int tail = Math.min(count, capacity - first);
+        writeFully(ch, first, tail);
+        if(tail < count) writeFully(ch, 0, count - tail);
+        return count;
+    }
+
+    /**
+     * Helper method that writes a run of records from a view of the buffer,
+     * leaving the buffer's own position alone.
+     */
+    private void writeFully(WritableByteChannel ch, int slot, int count)
+            throws IOException {
+        ByteBuffer view = buf.duplicate();
+        view.limit((slot + count) * RECORD_SIZE).position(slot * RECORD_SIZE);
+        while(view.hasRemaining())
+            ch.write(view);
+    }
+
+    /**
+     * Forgets every sample. Does not free the off-heap storage.
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+        lastTime = Long.MIN_VALUE;
+    }
+
+    /**
+     * Helper method that converts a sample index into a byte offset.
+     */
+    private int offsetOf(int i) {
+        if(i < 0 || i >= size) throw new IndexOutOfBoundsException(
+                "Index: " + i + ", Size: " + size);
+        return ((head - size + i + capacity) % capacity) * RECORD_SIZE;
+    }
+}
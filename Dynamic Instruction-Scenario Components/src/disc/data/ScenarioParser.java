@@ -0,0 +1,100 @@
+package disc.data;
+
+import java.util.ArrayList;
+
+/**
+ * Line-by-line parser for {@link Scenario}s, for reading Scenarios straight out
+ * of a larger stream (such as a ScenarioCompressor chain or DISC file) without
+ * first copying each one into its own String. Lines are given one at a time to
+ * parseLine(), and build() turns everything given so far into a Scenario and
+ * starts over, so one parser can be reused for a whole chain.
+ * <p>
+ * Follows the same rules as the Scenario constructors: "##name=" sets the
+ * name, any other line starting with "##" adds an arg, other lines starting
+ * with '#' are comments, and everything else is an {@link Instruction}.
+ *
+ * @author Liam Williams
+ * @version 0.1.1
+ */
+public class ScenarioParser {
+
+    String scenarioName = null;
+    ArrayList<String> args = new ArrayList<String>(0);
+    ArrayList<Instruction> instructions = new ArrayList<Instruction>(0);
+    boolean content = false;
+    InstructionPool pool = null;
+
+    /**
+     * Creates a parser that gives every Scenario its own
+     * {@link Instruction}s.
+     */
+    public ScenarioParser() {}
+
+    /**
+     * Creates a parser that shares {@link Instruction}s, names, and args
+     * through the given pool.
+     *
+     * @param pool
+     *            The InstructionPool to use
+     */
+    public ScenarioParser(InstructionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Reads a single line of a Scenario.
+     *
+     * @param line
+     *            The line to read
+     */
+    public void parseLine(String line) {
+        String tmp = line.trim();
+        if(tmp.isEmpty()) return;
+        content = true;
+        if(tmp.startsWith("##")) {
+            if(tmp.startsWith("##name="))
+                scenarioName = intern(tmp.substring(7));
+            else args.add(intern(tmp.substring(tmp.indexOf('=') + 1)));
+        } else if(!tmp.startsWith("#"))
+            instructions.add(pool == null ? new Instruction(tmp)
+                    : pool.parse(tmp));
+    }
+
+    /**
+     * @return true if any non-empty line has been read since the last build()
+     */
+    public boolean hasContent() {
+        return content;
+    }
+
+    /**
+     * Builds a {@link Scenario} from the lines read since the last build(),
+     * then resets the parser.
+     *
+     * @return The new Scenario
+     */
+    public Scenario build() {
+        Scenario s = new Scenario(scenarioName,
+                args.toArray(new String[args.size()]),
+                instructions.toArray(new Instruction[instructions.size()]));
+        reset();
+        return s;
+    }
+
+    /**
+     * Helper method that interns a String if there is a pool.
+     */
+    private String intern(String s) {
+        return pool == null ? s : pool.intern(s);
+    }
+
+    /**
+     * Throws away everything read since the last build().
+     */
+    public void reset() {
+        scenarioName = null;
+        args.clear();
+        instructions.clear();
+        content = false;
+    }
+}
@@ -0,0 +1,218 @@
+package disc.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link Scenario} with placeholders, such as "nav.goto, ${target}", that
+ * can be turned into any number of ordinary Scenarios by filling them in.
+ * Placeholders can go in the name, the args, and the target and args of any
+ * {@link Instruction}. The template is split into its fixed text and its
+ * placeholders once, when it is made, so instantiate() only joins Strings
+ * together; nothing is parsed again. Instructions without placeholders are
+ * shared by every Scenario made from the template.
+ * <p>
+ * Values come from the map given to instantiate(). Anything not in the map
+ * falls back to the template's own args, named by position: the first
+ * "##...=" line is ${arg0}, the next ${arg1}, and so on.
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public class ScenarioTemplate {
+
+    final Scenario template;
+    final Slot name;
+    final Slot[] args;
+    final Instruction[] fixed;
+    final Slot[] targets;
+    final Slot[][] instArgs;
+    final Map<String, String> defaults = new HashMap<>();
+    final Set<String> keys = new LinkedHashSet<>();
+
+    /**
+     * Splits the given {@link Scenario} into fixed text and placeholders.
+     *
+     * @param template
+     *            The Scenario to use as a template
+     */
+    public ScenarioTemplate(Scenario template) {
+        this.template = template;
+        this.name = slot(template.getName());
+        String[] a = template.getArgs();
+        this.args = new Slot[a.length];
+        for(int i = 0; i < a.length; i++) {
+            args[i] = slot(a[i]);
+            defaults.put("arg" + i, a[i]);
+        }
+        int n = template.getNumberOfInstructions();
+        fixed = new Instruction[n];
+        targets = new Slot[n];
+        instArgs = new Slot[n][];
+        for(int i = 0; i < n; i++) {
+            Instruction inst = template.getInstruction(i);
+            Slot t = slot(inst.getTarget());
+            Slot[] s = null;
+            String[] ia = inst.getArgs();
+            if(ia != null) {
+                for(int j = 0; j < ia.length; j++) {
+                    Slot sl = slot(ia[j]);
+                    if(sl != null) {
+                        if(s == null) s = new Slot[ia.length];
+                        s[j] = sl;
+                    }
+                }
+            }
+            if(t == null && s == null) fixed[i] = inst;
+            targets[i] = t;
+            instArgs[i] = s;
+        }
+    }
+
+    /**
+     * Parses a template straight from the text of a Scenario file.
+     *
+     * @param template
+     *            The text of the template
+     */
+    public ScenarioTemplate(String template) {
+        this(new Scenario(template));
+    }
+
+    /**
+     * @return the names of every placeholder in the template, in the order
+     *         they first appear
+     */
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /**
+     * @return the {@link Scenario} the template was made from
+     */
+    public Scenario getTemplate() {
+        return template;
+    }
+
+    /**
+     * Fills in the placeholders with the given values, falling back to the
+     * template's own args.
+     *
+     * @param values
+     *            The value of each placeholder, by name
+     * @return A new Scenario
+     * @throws IllegalArgumentException
+     *             If a placeholder has no value
+     */
+    public Scenario instantiate(Map<String, String> values) {
+        String n = name == null ? template.getName() : name.fill(values, this);
+        String[] a = new String[args.length];
+        for(int i = 0; i < a.length; i++)
+            a[i] = args[i] == null ? template.getArgs()[i]
+                    : args[i].fill(values, this);
+        Instruction[] out = new Instruction[fixed.length];
+        for(int i = 0; i < out.length; i++) {
+            if(fixed[i] != null) {
+                out[i] = fixed[i];
+                continue;
+            }
+            Instruction inst = template.getInstruction(i);
+            String t = targets[i] == null ? inst.getTarget()
+                    : targets[i].fill(values, this);
+            String[] ia = inst.getArgs();
+            String[] filled = null;
+            if(ia != null) {
+                filled = new String[ia.length];
+                for(int j = 0; j < ia.length; j++)
+                    filled[j] = instArgs[i] == null || instArgs[i][j] == null
+                            ? ia[j] : instArgs[i][j].fill(values, this);
+            }
+            out[i] = new Instruction(inst.getT(), t, filled);
+        }
+        return new Scenario(n, a, out);
+    }
+
+    /**
+     * Fills in the placeholders ${arg0}, ${arg1}, and so on with the given
+     * values, falling back to the template's own args.
+     *
+     * @param values
+     *            The values, in order
+     * @return A new Scenario
+     * @throws IllegalArgumentException
+     *             If a placeholder has no value
+     */
+    public Scenario instantiate(String... values) {
+        Map<String, String> m = new HashMap<>();
+        for(int i = 0; i < values.length; i++)
+            m.put("arg" + i, values[i]);
+        return instantiate(m);
+    }
+
+    /**
+     * Helper method that splits a String into fixed text and placeholders.
+     *
+     * @return The Slot, or null if there are no placeholders in it
+     */
+    private Slot slot(String s) {
+        if(s == null || !s.contains("${")) return null;
+        ArrayList<String> parts = new ArrayList<>();
+        int at = 0;
+        while(true) {
+            int open = s.indexOf("${", at);
+            int close = open == -1 ? -1 : s.indexOf('}', open + 2);
+            if(close == -1) {
+                parts.add(s.substring(at));
+                break;
+            }
+            parts.add(s.substring(at, open));
+            String key = s.substring(open + 2, close).trim();
+            parts.add(key);
+            keys.add(key);
+            at = close + 1;
+        }
+        return new Slot(parts.toArray(new String[parts.size()]));
+    }
+
+    /**
+     * Helper method that looks up the value of a placeholder.
+     */
+    String valueOf(String key, Map<String, String> values) {
+        String v = values.get(key);
+        if(v == null) v = defaults.get(key);
+        if(v == null) throw new IllegalArgumentException(
+                "No value for ${" + key + "}");
+        return v;
+    }
+
+    /**
+     * A String split into fixed text and placeholders. Even indexes of parts
+     * are fixed text, odd indexes are placeholder names.
+     */
+    static final class Slot {
+
+        final String[] parts;
+        final int fixedLength;
+
+        Slot(String[] parts) {
+            this.parts = parts;
+            int n = 0;
+            for(int i = 0; i < parts.length; i += 2)
+                n += parts[i].length();
+            this.fixedLength = n;
+        }
+
+        String fill(Map<String, String> values, ScenarioTemplate t) {
+            if(parts.length == 3 && parts[0].isEmpty() && parts[2].isEmpty())
+                return t.valueOf(parts[1], values);
+            StringBuilder sb = new StringBuilder(fixedLength + 16);
+            for(int i = 0; i < parts.length; i++)
+                sb.append(i % 2 == 0 ? parts[i] : t.valueOf(parts[i], values));
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,700 @@
+package disc.data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import disc.util.Fingerprint;
+import disc.util.WaypointException;
+
+/**
+ * Read-only {@link WaypointMap} backed by a tiled, memory-mapped file, for maps
+ * too big to keep on the heap. The map is split into square tiles by x and y,
+ * and only the tiles that are looked at are read in, into a small cache that
+ * drops the least recently used tile when full. Heap use depends on the cache
+ * size, not the size of the map.
+ * <p>
+ * Lookups by name go through a hash table of names kept in the file, which
+ * points at the tile holding each Waypoint. Lookups by position only read the
+ * tiles within the given tolerance.
+ * <p>
+ * Code that reads the Waypoints of any WaypointMap directly, such as the
+ * ConcurrentWaypointMap copy constructor, sees a read-only view that reads
+ * every tile in turn without caching them. Anything that tries to change it
+ * throws an UnsupportedOperationException.
+ * <p>
+ * Tiled files are made with build(), either from a .waypoint file (read twice,
+ * only the names held in memory) or from an existing WaypointMap. If a name
+ * appears more than once, the last one wins, as in WaypointMap. The layout
+ * is:<br>
+ * <br>
+ * header (64 bytes)<br>
+ * tile index: key (long), offset (long), length (int), count (int), sorted by
+ * key<br>
+ * name index: hash (long, 0 if empty), tile number (int), open addressing<br>
+ * tile data: name length (short), name (UTF-8), x, y, z, heading, roll, pitch
+ * (doubles)<br>
+ * <br>
+ * The name index is mapped as a single buffer, which limits a file to roughly
+ * 100 million Waypoints.
+ *
+ * @author Liam Williams
+ * @version 0.1.3
+ */
+public class TiledWaypointMap extends WaypointMap implements Closeable {
+
+    static final int MAGIC = 0x44574D54;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int TILE_ENTRY_SIZE = 24;
+    static final int NAME_SLOT_SIZE = 12;
+    static final int MAX_NAME_SLOTS = 1 << 27;
+    static final long SEGMENT_SIZE = 1L << 30;
+
+    File source;
+    RandomAccessFile file;
+    FileChannel ch;
+    MappedByteBuffer tileIndex;
+    MappedByteBuffer nameIndex;
+    MappedByteBuffer[] segments;
+    long dataOffset;
+    long maxTileLength;
+    int minTx, maxTx, minTy, maxTy;
+    double tileSize;
+    int tileCount;
+    int nameSlots;
+    long count;
+    int cacheSize;
+    long fingerprint = 0;
+    LinkedHashMap<Integer, Waypoint[]> cache;
+
+    /**
+     * Opens a tiled map file made by build(), caching up to 64 tiles.
+     *
+     * @param input
+     *            The tiled map file
+     * @throws IOException
+     *             If the file doesn't exist or isn't a tiled map
+     */
+    public TiledWaypointMap(File input) throws IOException {
+        this(input, 64);
+    }
+
+    /**
+     * Opens a tiled map file made by build().
+     *
+     * @param input
+     *            The tiled map file
+     * @param cacheSize
+     *            The most tiles to keep in memory at once
+     * @throws IOException
+     *             If the file doesn't exist or isn't a tiled map
+     */
+    public TiledWaypointMap(File input, int cacheSize) throws IOException {
+        this.m = new TileMap();
+        this.source = input;
+        this.file = new RandomAccessFile(input, "r");
+        this.ch = file.getChannel();
+        ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE);
+        while(h.hasRemaining() && ch.read(h, h.position()) > 0);
+        h.flip();
+        if(h.remaining() < HEADER_SIZE || h.getInt() != MAGIC
+                || h.getInt() != VERSION) {
+            close();
+            throw new IOException("Not a tiled waypoint map: " + input);
+        }
+        inDegrees = (h.getInt() & 1) != 0;
+        tileCount = h.getInt();
+        tileSize = h.getDouble();
+        count = h.getLong();
+        long tileIndexOffset = h.getLong();
+        long nameIndexOffset = h.getLong();
+        nameSlots = h.getInt();
+        tileIndex = ch.map(FileChannel.MapMode.READ_ONLY, tileIndexOffset,
+                (long) tileCount * TILE_ENTRY_SIZE);
+        nameIndex = ch.map(FileChannel.MapMode.READ_ONLY, nameIndexOffset,
+                (long) nameSlots * NAME_SLOT_SIZE);
+        dataOffset = nameIndexOffset + (long) nameSlots * NAME_SLOT_SIZE;
+        segments = new MappedByteBuffer[(int) ((ch.size() - dataOffset)
+                / SEGMENT_SIZE + 1)];
+        minTx = minTy = Integer.MAX_VALUE;
+        maxTx = maxTy = Integer.MIN_VALUE;
+        for(int t = 0; t < tileCount; t++) {
+            long key = tileIndex.getLong(t * TILE_ENTRY_SIZE);
+            int tx = (int) (key >> 32), ty = (int) key;
+            minTx = Math.min(minTx, tx);
+            maxTx = Math.max(maxTx, tx);
+            minTy = Math.min(minTy, ty);
+            maxTy = Math.max(maxTy, ty);
+            maxTileLength = Math.max(maxTileLength,
+                    tileIndex.getInt(t * TILE_ENTRY_SIZE + 16));
+        }
+        setCacheSize(cacheSize);
+    }
+
+    /**
+     * Searches the map for a {@link Waypoint} of the given name, reading in
+     * the tile it is in if needed.
+     *
+     * @param name
+     *            The name of the Waypoint
+     * @return The found Waypoint, or null if it does not exist.
+     */
+    @Override
+    public Waypoint get(String name) {
+        if(name == null) return null;
+        long hash = hash(name);
+        int mask = nameSlots - 1;
+        for(int slot = (int) hash & mask;; slot = (slot + 1) & mask) {
+            long h = nameIndex.getLong(slot * NAME_SLOT_SIZE);
+            if(h == 0) return null;
+            if(h == hash) {
+                for(Waypoint w : getTile(nameIndex.getInt(
+                        slot * NAME_SLOT_SIZE + 8)))
+                    if(w.name.equals(name)) return w;
+            }
+        }
+    }
+
+    /**
+     * Searches the map for the closest {@link Waypoint} to the given x and y,
+     * only reading the tiles within the tolerance. The search is limited to
+     * the tiles that exist, so a large tolerance costs no more than reading
+     * every tile.
+     *
+     * @param x
+     *            The x to search near
+     * @param y
+     *            The y to search near
+     * @param tolerance
+     *            How far away in x and y a Waypoint can be
+     * @return The closest Waypoint in range, or null if there isn't one
+     */
+    public Waypoint getNearest(double x, double y, double tolerance) {
+        Waypoint best = null;
+        if(tileCount == 0) return null;
+        int tx0 = tileOf(x - tolerance, minTx, maxTx);
+        int tx1 = tileOf(x + tolerance, minTx, maxTx);
+        int ty0 = tileOf(y - tolerance, minTy, maxTy);
+        int ty1 = tileOf(y + tolerance, minTy, maxTy);
+        long boxTiles = ((long) tx1 - tx0 + 1) * ((long) ty1 - ty0 + 1);
+        if(boxTiles <= tileCount) {
+            for(int tx = tx0; tx <= tx1; tx++) {
+                for(int ty = ty0; ty <= ty1; ty++) {
+                    int t = findTile(key(tx, ty));
+                    if(t >= 0) best = nearest(getTile(t), x, y, tolerance,
+                            best);
+                }
+            }
+        } else {
+            for(int t = 0; t < tileCount; t++) {
+                long key = tileIndex.getLong(t * TILE_ENTRY_SIZE);
+                int tx = (int) (key >> 32), ty = (int) key;
+                if(tx >= tx0 && tx <= tx1 && ty >= ty0 && ty <= ty1)
+                    best = nearest(getTile(t), x, y, tolerance, best);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return The number of {@link Waypoint}s in the map
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * @return The number of tiles currently in memory
+     */
+    public synchronized int getCachedTileCount() {
+        return cache.size();
+    }
+
+    /**
+     * Sets the most tiles to keep in memory at once, dropping the least
+     * recently used ones if there are too many.
+     *
+     * @param cacheSize
+     *            The most tiles to keep, at least 1
+     */
+    public synchronized void setCacheSize(int cacheSize) {
+        this.cacheSize = Math.max(cacheSize, 1);
+        LinkedHashMap<Integer, Waypoint[]> old = cache;
+        cache = new LinkedHashMap<Integer, Waypoint[]>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Integer, Waypoint[]> eldest) {
+                return size() > TiledWaypointMap.this.cacheSize;
+            }
+        };
+        if(old != null) cache.putAll(old);
+    }
+
+    /**
+     * Not supported; tiled maps are read-only.
+     */
+    @Override
+    public void addWaypoint(Waypoint toAdd) {
+        throw new UnsupportedOperationException(
+                "Cannot edit a TiledWaypointMap.");
+    }
+
+    /**
+     * Not supported; tiled maps are read-only.
+     */
+    @Override
+    public void removeWaypoint(String waypointName) {
+        throw new UnsupportedOperationException(
+                "Cannot edit a TiledWaypointMap.");
+    }
+
+    /**
+     * Appends a Constructor-readable representation of the whole map, one tile
+     * at a time. Reads every tile without caching them, so this is slow for
+     * large maps.
+     */
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        if(inDegrees) out.append("#$DEGREES\r\n");
+        else out.append("#$RADIANS\r\n");
+        for(int t = 0; t < tileCount; t++) {
+            for(Waypoint w : readTile(t)) {
+                w.writeTo(out);
+                out.append("\r\n");
+            }
+        }
+    }
+
+    /**
+     * Returns the fingerprint of the whole map. Reads every tile without
+     * caching them the first time, like writeTo(), then remembers the result,
+     * since the file cannot change.
+     */
+    @Override
+    public synchronized long fingerprint() {
+        if(fingerprint == 0) {
+            long sum = 0;
+            for(int t = 0; t < tileCount; t++)
+                for(Waypoint w : readTile(t))
+                    sum += Fingerprint.mix(w.fingerprint());
+            fingerprint = fingerprintOf(sum, count, inDegrees);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Opens the same file again, with its own tile cache.
+     */
+    @Override
+    public TiledWaypointMap clone() {
+        try {
+            return new TiledWaypointMap(source, cacheSize);
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Closes the underlying file. Tiles already in memory can still be read.
+     */
+    @Override
+    public void close() throws IOException {
+        if(file != null) file.close();
+    }
+
+    /**
+     * Helper method that gets a tile from the cache, reading it in if needed.
+     */
+    private synchronized Waypoint[] getTile(int t) {
+        Waypoint[] ws = cache.get(t);
+        if(ws == null) {
+            ws = readTile(t);
+            cache.put(t, ws);
+        }
+        return ws;
+    }
+
+    /**
+     * Helper method that decodes a tile from its slice of the mapped file.
+     */
+    private Waypoint[] readTile(int t) {
+        int at = t * TILE_ENTRY_SIZE;
+        long offset = tileIndex.getLong(at + 8) - dataOffset;
+        int length = tileIndex.getInt(at + 16);
+        Waypoint[] ws = new Waypoint[tileIndex.getInt(at + 20)];
+        ByteBuffer b = segment((int) (offset / SEGMENT_SIZE)).duplicate();
+        int start = (int) (offset % SEGMENT_SIZE);
+        b.limit(start + length);
+        b.position(start);
+        byte[] name = new byte[256];
+        for(int i = 0; i < ws.length; i++) {
+            int n = b.getShort() & 0xFFFF;
+            if(n > name.length) name = new byte[n];
+            b.get(name, 0, n);
+            ws[i] = new Waypoint(new String(name, 0, n,
+                    StandardCharsets.UTF_8), b.getDouble(), b.getDouble(),
+                    b.getDouble(), b.getDouble(), b.getDouble(),
+                    b.getDouble());
+        }
+        return ws;
+    }
+
+    /**
+     * Helper method that maps a segment of the tile data the first time it is
+     * needed. Segments overlap by the length of the longest tile, so every
+     * tile fits inside the segment its start is in.
+     */
+    private synchronized MappedByteBuffer segment(int i) {
+        if(segments[i] == null) {
+            long start = i * SEGMENT_SIZE;
+            try {
+                long length = Math.min(SEGMENT_SIZE + maxTileLength,
+                        ch.size() - dataOffset - start);
+                segments[i] = ch.map(FileChannel.MapMode.READ_ONLY,
+                        dataOffset + start, length);
+            } catch(IOException e) {
+                throw new IllegalStateException(
+                        "Could not map tile data " + i, e);
+            }
+        }
+        return segments[i];
+    }
+
+    /**
+     * Helper method that binary searches the tile index for a key.
+     *
+     * @return The tile number, or -1 if there is no such tile
+     */
+    private int findTile(long key) {
+        int lo = 0, hi = tileCount - 1;
+        while(lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long k = tileIndex.getLong(mid * TILE_ENTRY_SIZE);
+            if(k < key) lo = mid + 1;
+            else if(k > key) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * Helper method that finds the tile row or column of a coordinate,
+     * clamped to the range of tiles that exist.
+     */
+    private int tileOf(double v, int min, int max) {
+        double t = Math.floor(v / tileSize);
+        if(t < min) return min;
+        if(t > max) return max;
+        return (int) t;
+    }
+
+    /**
+     * Helper method that picks the closer of the given Waypoint and the
+     * closest Waypoint of a tile within the tolerance.
+     */
+    private static Waypoint nearest(Waypoint[] tile, double x, double y,
+            double tolerance, Waypoint best) {
+        double bestDistance = Double.POSITIVE_INFINITY;
+        if(best != null) bestDistance = (best.x - x) * (best.x - x)
+                + (best.y - y) * (best.y - y);
+        for(Waypoint w : tile) {
+            double dx = w.x - x, dy = w.y - y;
+            if(Math.abs(dx) > tolerance || Math.abs(dy) > tolerance)
+                continue;
+            double d = dx * dx + dy * dy;
+            if(d < bestDistance) {
+                bestDistance = d;
+                best = w;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Builds a tiled map file from a .waypoint file. The .waypoint file is
+     * read twice and never held in memory; only a count for each tile and
+     * where each name last appears are. A name that appears more than once
+     * keeps its last Waypoint, as WaypointMap does. Invalid lines are
+     * reported on the first read only.
+     *
+     * @param waypointFile
+     *            The .waypoint file to read
+     * @param output
+     *            The tiled map file to write. Overwrites
+     * @param tileSize
+     *            The width and height of each tile
+     * @throws IOException
+     *             If either file cannot be read or written
+     */
+    public static void build(File waypointFile, File output, double tileSize)
+            throws IOException {
+        boolean[] inDegrees = new boolean[1];
+        int[] pass = new int[1];
+        build(c -> {
+            try {
+                readWaypointFile(waypointFile, inDegrees, c, pass[0]++ == 0);
+            } catch(FileNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }, inDegrees, output, tileSize);
+    }
+
+    /**
+     * Builds a tiled map file from a {@link WaypointMap}.
+     *
+     * @param map
+     *            The WaypointMap to write
+     * @param output
+     *            The tiled map file to write. Overwrites
+     * @param tileSize
+     *            The width and height of each tile
+     * @throws IOException
+     *             If the file cannot be written
+     */
+    public static void build(WaypointMap map, File output, double tileSize)
+            throws IOException {
+        build(c -> {
+            for(Waypoint w : map.m.values())
+                c.accept(w);
+        }, new boolean[] {map.inDegrees}, output, tileSize);
+    }
+
+    /**
+     * Helper method that writes a tiled map file in two passes over the
+     * source: one to size the tiles, and one to write the Waypoints into
+     * place. inDegrees is read after the first pass, which may set it. The
+     * first pass notes the last time each name appears, and only that
+     * Waypoint is written.
+     */
+    private static void build(Consumer<Consumer<Waypoint>> source,
+            boolean[] inDegrees, File output, double tileSize)
+            throws IOException {
+        if(!(tileSize > 0)) throw new IllegalArgumentException(
+                "Tile size must be positive.");
+        TreeMap<Long, long[]> tiles = new TreeMap<>();
+        HashMap<String, long[]> last = new HashMap<>();
+        long[] total = new long[1];
+        long[] seen = new long[1];
+        source.accept(w -> {
+            long key = tileKey(w, tileSize);
+            long size = 2 + w.name.getBytes(StandardCharsets.UTF_8).length + 48;
+            long[] prev = last.put(w.name, new long[] {seen[0]++, key, size});
+            if(prev != null) {
+                long[] t = tiles.get(prev[1]);
+                t[0] -= prev[2];
+                if(--t[1] == 0) tiles.remove(prev[1]);
+            } else total[0]++;
+            long[] t = tiles.computeIfAbsent(key, k -> new long[3]);
+            t[0] += size;
+            t[1]++;
+        });
+        if(total[0] > MAX_NAME_SLOTS / 4 * 3) throw new IOException(
+                "Too many Waypoints for a tiled map: " + total[0]);
+        int nameSlots = Integer.highestOneBit((int) Math.max(
+                Math.min(total[0] * 2, MAX_NAME_SLOTS), 2) - 1) << 1;
+        long tileIndexOffset = HEADER_SIZE;
+        long nameIndexOffset = tileIndexOffset
+                + (long) tiles.size() * TILE_ENTRY_SIZE;
+        long dataOffset = nameIndexOffset + (long) nameSlots * NAME_SLOT_SIZE;
+        HashMap<Long, Integer> tileNumbers = new HashMap<>();
+        try(RandomAccessFile raf = new RandomAccessFile(output, "rw")) {
+            raf.setLength(0);
+            FileChannel out = raf.getChannel();
+            ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE);
+            h.putInt(MAGIC).putInt(VERSION).putInt(inDegrees[0] ? 1 : 0)
+                    .putInt(tiles.size()).putDouble(tileSize)
+                    .putLong(total[0]).putLong(tileIndexOffset)
+                    .putLong(nameIndexOffset).putInt(nameSlots);
+            h.clear();
+            writeFully(out, h, 0);
+            ByteBuffer entry = ByteBuffer.allocate(TILE_ENTRY_SIZE);
+            long at = dataOffset;
+            int n = 0;
+            for(Map.Entry<Long, long[]> e : tiles.entrySet()) {
+                long[] t = e.getValue();
+                entry.clear();
+                entry.putLong(e.getKey()).putLong(at).putInt((int) t[0])
+                        .putInt((int) t[1]).flip();
+                writeFully(out, entry,
+                        tileIndexOffset + (long) n * TILE_ENTRY_SIZE);
+                t[2] = at;
+                at += t[0];
+                tileNumbers.put(e.getKey(), n++);
+            }
+            MappedByteBuffer names = out.map(FileChannel.MapMode.READ_WRITE,
+                    nameIndexOffset, (long) nameSlots * NAME_SLOT_SIZE);
+            int mask = nameSlots - 1;
+            IOException[] failed = new IOException[1];
+            seen[0] = 0;
+            source.accept(w -> {
+                long[] l = last.get(w.name);
+                if(l == null || l[0] != seen[0]++ || failed[0] != null)
+                    return;
+                long key = tileKey(w, tileSize);
+                long[] t = tiles.get(key);
+                byte[] name = w.name.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer rec = ByteBuffer.allocate(2 + name.length + 48);
+                rec.putShort((short) name.length).put(name).putDouble(w.x)
+                        .putDouble(w.y).putDouble(w.z).putDouble(w.heading)
+                        .putDouble(w.roll).putDouble(w.pitch).flip();
+                try {
+                    writeFully(out, rec, t[2]);
+                } catch(IOException e) {
+                    failed[0] = e;
+                }
+                t[2] += rec.limit();
+                long hash = hash(w.name);
+                int slot = (int) hash & mask;
+                while(names.getLong(slot * NAME_SLOT_SIZE) != 0)
+                    slot = (slot + 1) & mask;
+                names.putLong(slot * NAME_SLOT_SIZE, hash);
+                names.putInt(slot * NAME_SLOT_SIZE + 8, tileNumbers.get(key));
+            });
+            if(failed[0] != null) throw failed[0];
+            names.force();
+        }
+    }
+
+    /**
+     * Helper method that parses a .waypoint file the same way
+     * {@link WaypointMap} does, handing each Waypoint to the consumer and
+     * noting whether it is in degrees.
+     */
+    private static void readWaypointFile(File input, boolean[] inDegrees,
+            Consumer<Waypoint> c, boolean report)
+            throws FileNotFoundException {
+        Scanner scn = new Scanner(input);
+        while(scn.hasNextLine()) {
+            String tmp = scn.nextLine().trim();
+            if(tmp.startsWith("#$")) {
+                inDegrees[0] = tmp.contains("DEGREES");
+            } else if(!(tmp.startsWith("#") || tmp.isEmpty())) {
+                try {
+                    c.accept(new Waypoint(tmp));
+                } catch(WaypointException e) {
+                    if(report) e.printStackTrace();
+                }
+            }
+        }
+        scn.close();
+    }
+
+    /**
+     * Helper method that writes the whole buffer at the given position.
+     */
+    private static void writeFully(FileChannel out, ByteBuffer b, long at)
+            throws IOException {
+        while(b.hasRemaining())
+            at += out.write(b, at);
+    }
+
+    /**
+     * Read-only view of every {@link Waypoint} in the file, for code that
+     * reads a WaypointMap's Waypoints directly. Iterating it reads each tile
+     * in turn without caching them.
+     */
+    class TileMap extends AbstractMap<String, Waypoint> {
+
+        @Override
+        public Waypoint get(Object key) {
+            return (key instanceof String) ? TiledWaypointMap.this
+                    .get((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(count, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public Set<Map.Entry<String, Waypoint>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Waypoint>>() {
+
+                @Override
+                public Iterator<Map.Entry<String, Waypoint>> iterator() {
+                    return new Iterator<Map.Entry<String, Waypoint>>() {
+
+                        int tile = 0;
+                        int next = 0;
+                        Waypoint[] ws = new Waypoint[0];
+
+                        @Override
+                        public boolean hasNext() {
+                            while(next == ws.length && tile < tileCount) {
+                                ws = readTile(tile++);
+                                next = 0;
+                            }
+                            return next < ws.length;
+                        }
+
+                        @Override
+                        public Map.Entry<String, Waypoint> next() {
+                            if(!hasNext()) throw new NoSuchElementException();
+                            Waypoint w = ws[next++];
+                            return new AbstractMap.SimpleImmutableEntry<>(
+                                    w.getName(), w);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return TileMap.this.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * Helper method that finds the key of the tile a Waypoint is in.
+     */
+    private static long tileKey(Waypoint w, double tileSize) {
+        return key((int) Math.floor(w.x / tileSize),
+                (int) Math.floor(w.y / tileSize));
+    }
+
+    /**
+     * Helper method that packs a tile column and row into a key.
+     */
+    private static long key(int tx, int ty) {
+        return ((long) tx << 32) | (ty & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Helper method that hashes a name into 64 bits, never 0, using FNV-1a.
+     */
+    private static long hash(String name) {
+        long h = 0xCBF29CE484222325L;
+        for(int i = 0; i < name.length(); i++) {
+            h ^= name.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return (h == 0) ? 1 : h;
+    }
+}
@@ -0,0 +1,321 @@
+package disc.data;
+
+import disc.util.WaypointException;
+
+/**
+ * Path through a sequence of {@link Waypoint}s that can be sampled at any
+ * distance or time along it. x, y, and z are interpolated in straight lines
+ * between Waypoints; heading, roll, and pitch are interpolated along the
+ * shorter way round, using a full turn of 360 or 2*pi depending on whether the
+ * {@link WaypointMap} is in degrees. Interpolated angles are not wrapped, so
+ * they can pass outside the range of the two Waypoints' angles by up to half a
+ * turn.
+ * <p>
+ * All of the work is done by the constructor. Sampling writes into arrays
+ * supplied by the caller, six doubles per sample in the order x, y, z,
+ * heading, roll, pitch, and never allocates.
+ * <p>
+ * For time-based sampling, the Trajectory follows a trapezoidal speed profile
+ * which starts and ends at rest, set with setProfile().
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public class Trajectory {
+
+    double[] points;
+    double[] distances;
+    int count;
+    double turn;
+    double maxSpeed = 1;
+    double maxAccel = Double.POSITIVE_INFINITY;
+
+    /**
+     * Builds a {@link Trajectory} through the named {@link Waypoint}s of the
+     * given {@link WaypointMap}, in order.
+     *
+     * @param map
+     *            The WaypointMap to look the Waypoints up in
+     * @param waypointNames
+     *            The names of the Waypoints to pass through
+     * @throws WaypointException
+     *             If a Waypoint isn't in the map, or no names are given
+     */
+    public Trajectory(WaypointMap map, String... waypointNames)
+            throws WaypointException {
+        Waypoint[] w = new Waypoint[waypointNames.length];
+        for(int i = 0; i < w.length; i++) {
+            w[i] = map.get(waypointNames[i]);
+            if(w[i] == null) throw new WaypointException(
+                    "Invalid Trajectory: no Waypoint named " + waypointNames[i]);
+        }
+        build(w, map.isInDegrees());
+    }
+
+    /**
+     * Builds a {@link Trajectory} through the given {@link Waypoint}s, in
+     * order.
+     *
+     * @param waypoints
+     *            The Waypoints to pass through
+     * @param inDegrees
+     *            Whether the angles are in degrees or radians
+     * @throws WaypointException
+     *             If no Waypoints are given
+     */
+    public Trajectory(Waypoint[] waypoints, boolean inDegrees)
+            throws WaypointException {
+        build(waypoints, inDegrees);
+    }
+
+    /**
+     * Helper method that copies the Waypoints into flat arrays and measures
+     * the distance to each one.
+     */
+    private void build(Waypoint[] w, boolean inDegrees)
+            throws WaypointException {
+        if(w.length == 0) throw new WaypointException(
+                "Invalid Trajectory: does not define any Waypoints.");
+        count = w.length;
+        turn = inDegrees ? 360 : 2 * Math.PI;
+        points = new double[count * 6];
+        distances = new double[count];
+        for(int i = 0; i < count; i++) {
+            int o = i * 6;
+            points[o] = w[i].x;
+            points[o + 1] = w[i].y;
+            points[o + 2] = w[i].z;
+            points[o + 3] = w[i].heading;
+            points[o + 4] = w[i].roll;
+            points[o + 5] = w[i].pitch;
+            if(i > 0) {
+                double dx = points[o] - points[o - 6];
+                double dy = points[o + 1] - points[o - 5];
+                double dz = points[o + 2] - points[o - 4];
+                distances[i] = distances[i - 1]
+                        + Math.sqrt(dx * dx + dy * dy + dz * dz);
+            }
+        }
+    }
+
+    /**
+     * Sets the speed profile used for time-based sampling.
+     *
+     * @param maxSpeed
+     *            The cruising speed, in map units per unit of time
+     * @param maxAccel
+     *            The acceleration and deceleration, in map units per unit of
+     *            time squared. Use Double.POSITIVE_INFINITY for constant
+     *            speed.
+     */
+    public void setProfile(double maxSpeed, double maxAccel) {
+        if(!(maxSpeed > 0) || !(maxAccel > 0)) throw new IllegalArgumentException(
+                "Speed and acceleration must be positive.");
+        this.maxSpeed = maxSpeed;
+        this.maxAccel = maxAccel;
+    }
+
+    /**
+     * @return The distance along the whole {@link Trajectory}
+     */
+    public double getLength() {
+        return distances[count - 1];
+    }
+
+    /**
+     * @return The number of {@link Waypoint}s the {@link Trajectory} passes
+     *         through
+     */
+    public int getNumberOfWaypoints() {
+        return count;
+    }
+
+    /**
+     * @return The time taken to follow the whole {@link Trajectory} with the
+     *         current speed profile
+     */
+    public double getDuration() {
+        double length = getLength();
+        double rampDistance = maxSpeed * maxSpeed / maxAccel;
+        if(length >= rampDistance)
+            return length / maxSpeed + maxSpeed / maxAccel;
+        return 2 * Math.sqrt(length / maxAccel);
+    }
+
+    /**
+     * Writes the pose at the given distance along the {@link Trajectory}.
+     * Distances outside the Trajectory are clamped to its ends.
+     *
+     * @param distance
+     *            The distance along the Trajectory
+     * @param out
+     *            The array to write into
+     * @param outOffset
+     *            Where in the array to write the six values
+     */
+    public void sample(double distance, double[] out, int outOffset) {
+        interpolate(findSegment(distance), distance, out, outOffset);
+    }
+
+    /**
+     * Writes the pose at the given time along the {@link Trajectory}, using
+     * the current speed profile. Times outside the Trajectory are clamped to
+     * its ends.
+     *
+     * @param time
+     *            The time since the start of the Trajectory
+     * @param out
+     *            The array to write into
+     * @param outOffset
+     *            Where in the array to write the six values
+     */
+    public void sampleAtTime(double time, double[] out, int outOffset) {
+        sample(distanceAtTime(time), out, outOffset);
+    }
+
+    /**
+     * Writes "samples" evenly spaced poses along the {@link Trajectory},
+     * including both ends.
+     *
+     * @param samples
+     *            The number of poses to write
+     * @param out
+     *            The array to write into, at least samples * 6 long
+     */
+    public void resample(int samples, double[] out) {
+        double length = getLength();
+        int segment = 0;
+        for(int i = 0; i < samples; i++) {
+            double d = (samples == 1) ? 0 : length * i / (samples - 1);
+            segment = advance(segment, d);
+            interpolate(segment, d, out, i * 6);
+        }
+    }
+
+    /**
+     * Writes a pose every "spacing" units of distance along the
+     * {@link Trajectory}, starting from the start, until the Trajectory ends
+     * or the array is full.
+     *
+     * @param spacing
+     *            The distance between poses
+     * @param out
+     *            The array to write into
+     * @return The number of poses written
+     */
+    public int resampleByDistance(double spacing, double[] out) {
+        double length = getLength();
+        int segment = 0;
+        int n = 0;
+        for(double d = 0; d <= length && (n + 1) * 6 <= out.length; d = ++n
+                * spacing) {
+            segment = advance(segment, d);
+            interpolate(segment, d, out, n * 6);
+        }
+        return n;
+    }
+
+    /**
+     * Writes a pose every "period" units of time along the
+     * {@link Trajectory}, using the current speed profile, starting from the
+     * start, until the Trajectory ends or the array is full.
+     *
+     * @param period
+     *            The time between poses
+     * @param out
+     *            The array to write into
+     * @return The number of poses written
+     */
+    public int resampleByTime(double period, double[] out) {
+        double duration = getDuration();
+        int segment = 0;
+        int n = 0;
+        for(double t = 0; t <= duration && (n + 1) * 6 <= out.length; t = ++n
+                * period) {
+            double d = distanceAtTime(t);
+            segment = advance(segment, d);
+            interpolate(segment, d, out, n * 6);
+        }
+        return n;
+    }
+
+    /**
+     * Helper method that works out the distance travelled after the given
+     * time, following the trapezoidal speed profile.
+     */
+    private double distanceAtTime(double time) {
+        double length = getLength();
+        if(time <= 0) return 0;
+        double peak = maxSpeed;
+        double ramp = maxSpeed / maxAccel;
+        if(length < maxSpeed * ramp) {
+            ramp = Math.sqrt(length / maxAccel);
+            peak = maxAccel * ramp;
+        }
+        double duration = getDuration();
+        if(time >= duration) return length;
+        if(time < ramp) return 0.5 * maxAccel * time * time;
+        if(time <= duration - ramp)
+            return 0.5 * peak * ramp + peak * (time - ramp);
+        double left = duration - time;
+        return length - 0.5 * maxAccel * left * left;
+    }
+
+    /**
+     * Helper method that binary searches for the segment containing the given
+     * distance. Segment i runs from Waypoint i to Waypoint i + 1.
+     */
+    private int findSegment(double distance) {
+        int lo = 0, hi = count - 2;
+        while(lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if(distances[mid] <= distance) lo = mid;
+            else hi = mid - 1;
+        }
+        return Math.max(lo, 0);
+    }
+
+    /**
+     * Helper method that steps forward from the given segment to the segment
+     * containing the given distance, for walking the Trajectory in order.
+     */
+    private int advance(int segment, double distance) {
+        while(segment < count - 2 && distances[segment + 1] <= distance)
+            segment++;
+        return segment;
+    }
+
+    /**
+     * Helper method that interpolates within a segment and writes the pose.
+     */
+    private void interpolate(int segment, double distance, double[] out,
+            int outOffset) {
+        int a = segment * 6;
+        if(count == 1) {
+            System.arraycopy(points, 0, out, outOffset, 6);
+            return;
+        }
+        int b = a + 6;
+        double span = distances[segment + 1] - distances[segment];
+        double f = (span > 0) ? (distance - distances[segment]) / span : 1;
+        if(f < 0) f = 0;
+        else if(f > 1) f = 1;
+        for(int i = 0; i < 3; i++)
+            out[outOffset + i] = points[a + i]
+                    + (points[b + i] - points[a + i]) * f;
+        for(int i = 3; i < 6; i++)
+            out[outOffset + i] = points[a + i]
+                    + shortestTurn(points[b + i] - points[a + i]) * f;
+    }
+
+    /**
+     * Helper method that wraps an angle difference into half a turn either
+     * way.
+     */
+    private double shortestTurn(double delta) {
+        delta %= turn;
+        if(delta > turn / 2) delta -= turn;
+        else if(delta < -turn / 2) delta += turn;
+        return delta;
+    }
+}
@@ -0,0 +1,311 @@
+package disc.data;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable hash array mapped trie of {@link Waypoint}s by name, used by
+ * {@link ConcurrentWaypointMap}. put() and remove() return a new trie that
+ * shares every untouched node with the old one, so an update only copies the
+ * few nodes on the path to the changed entry and an old trie can be kept as a
+ * snapshot for free.
+ * <p>
+ * Each level uses 5 bits of the name's hash to pick one of up to 32 children.
+ * Names with identical hashes end up together in a collision node.
+ *
+ * @author Liam Williams
+ * @version 0.1.1
+ */
+final class WaypointTrie implements Iterable<Waypoint> {
+
+    static final WaypointTrie EMPTY = new WaypointTrie(
+            new BitmapNode(0, new Object[0]), 0);
+
+    final BitmapNode root;
+    final int size;
+
+    private WaypointTrie(BitmapNode root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @return The Waypoint stored under the given name, or null
+     */
+    Waypoint get(String name) {
+        int hash = hash(name);
+        Object node = root;
+        for(int shift = 0;; shift += 5) {
+            if(node instanceof BitmapNode) {
+                BitmapNode b = (BitmapNode) node;
+                int bit = 1 << ((hash >>> shift) & 31);
+                if((b.bitmap & bit) == 0) return null;
+                node = b.children[Integer.bitCount(b.bitmap & (bit - 1))];
+            } else if(node instanceof Leaf) {
+                Leaf l = (Leaf) node;
+                return (l.hash == hash && l.name.equals(name)) ? l.value : null;
+            } else {
+                for(Leaf l : ((CollisionNode) node).leaves)
+                    if(l.name.equals(name)) return l.value;
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @return A trie with the given Waypoint stored under the given name
+     */
+    WaypointTrie put(String name, Waypoint value) {
+        Leaf l = new Leaf(name, hash(name), value);
+        boolean[] added = new boolean[1];
+        BitmapNode r = (BitmapNode) put(root, 0, l, added);
+        return new WaypointTrie(r, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * @return A trie without the given name, or this trie if it isn't in it
+     */
+    WaypointTrie remove(String name) {
+        Object r = remove(root, 0, hash(name), name);
+        if(r == root) return this;
+        if(r == null) return EMPTY;
+        if(!(r instanceof BitmapNode)) r = wrap(r, 0);
+        return new WaypointTrie((BitmapNode) r, size - 1);
+    }
+
+    @Override
+    public Iterator<Waypoint> iterator() {
+        return new TrieIterator(root);
+    }
+
+    /**
+     * Helper method that spreads the high bits of the name's hash, so maps of
+     * similar names don't pile up in one branch.
+     */
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Helper method that inserts a leaf below the given node, copying the
+     * nodes along the way.
+     */
+    private static Object put(Object node, int shift, Leaf l,
+            boolean[] added) {
+        if(node instanceof BitmapNode) {
+            BitmapNode b = (BitmapNode) node;
+            int bit = 1 << ((l.hash >>> shift) & 31);
+            int idx = Integer.bitCount(b.bitmap & (bit - 1));
+            if((b.bitmap & bit) == 0) {
+                Object[] c = new Object[b.children.length + 1];
+                System.arraycopy(b.children, 0, c, 0, idx);
+                c[idx] = l;
+                System.arraycopy(b.children, idx, c, idx + 1,
+                        b.children.length - idx);
+                added[0] = true;
+                return new BitmapNode(b.bitmap | bit, c);
+            }
+            Object[] c = b.children.clone();
+            c[idx] = put(c[idx], shift + 5, l, added);
+            return new BitmapNode(b.bitmap, c);
+        } else if(node instanceof Leaf) {
+            Leaf old = (Leaf) node;
+            if(old.hash == l.hash) {
+                if(old.name.equals(l.name)) return l;
+                added[0] = true;
+                return new CollisionNode(l.hash, new Leaf[] {old, l});
+            }
+            added[0] = true;
+            return merge(old, l, shift);
+        } else {
+            CollisionNode cn = (CollisionNode) node;
+            if(cn.hash != l.hash) {
+                added[0] = true;
+                return merge(cn, l, shift);
+            }
+            for(int i = 0; i < cn.leaves.length; i++) {
+                if(cn.leaves[i].name.equals(l.name)) {
+                    Leaf[] ls = cn.leaves.clone();
+                    ls[i] = l;
+                    return new CollisionNode(cn.hash, ls);
+                }
+            }
+            Leaf[] ls = new Leaf[cn.leaves.length + 1];
+            System.arraycopy(cn.leaves, 0, ls, 0, cn.leaves.length);
+            ls[cn.leaves.length] = l;
+            added[0] = true;
+            return new CollisionNode(cn.hash, ls);
+        }
+    }
+
+    /**
+     * Helper method that builds the smallest subtree holding two entries with
+     * different hashes.
+     */
+    private static Object merge(Object a, Leaf b, int shift) {
+        int ha = (a instanceof Leaf) ? ((Leaf) a).hash : ((CollisionNode) a).hash;
+        int ia = (ha >>> shift) & 31;
+        int ib = (b.hash >>> shift) & 31;
+        if(ia == ib) return new BitmapNode(1 << ia,
+                new Object[] {merge(a, b, shift + 5)});
+        return new BitmapNode((1 << ia) | (1 << ib),
+                (ia < ib) ? new Object[] {a, b} : new Object[] {b, a});
+    }
+
+    /**
+     * Helper method that removes a name below the given node. Returns the
+     * same node if nothing changed, null if the node is now empty, or a lone
+     * leaf or collision node for the parent to pull up.
+     */
+    private static Object remove(Object node, int shift, int hash,
+            String name) {
+        if(node instanceof BitmapNode) {
+            BitmapNode b = (BitmapNode) node;
+            int bit = 1 << ((hash >>> shift) & 31);
+            if((b.bitmap & bit) == 0) return node;
+            int idx = Integer.bitCount(b.bitmap & (bit - 1));
+            Object child = b.children[idx];
+            Object r = remove(child, shift + 5, hash, name);
+            if(r == child) return node;
+            if(r == null) {
+                if(b.children.length == 1) return null;
+                Object[] c = new Object[b.children.length - 1];
+                System.arraycopy(b.children, 0, c, 0, idx);
+                System.arraycopy(b.children, idx + 1, c, idx,
+                        c.length - idx);
+                if(c.length == 1 && !(c[0] instanceof BitmapNode))
+                    return c[0];
+                return new BitmapNode(b.bitmap & ~bit, c);
+            }
+            if(b.children.length == 1 && !(r instanceof BitmapNode)) return r;
+            Object[] c = b.children.clone();
+            c[idx] = r;
+            return new BitmapNode(b.bitmap, c);
+        } else if(node instanceof Leaf) {
+            Leaf l = (Leaf) node;
+            return (l.hash == hash && l.name.equals(name)) ? null : node;
+        } else {
+            CollisionNode cn = (CollisionNode) node;
+            for(int i = 0; i < cn.leaves.length; i++) {
+                if(cn.leaves[i].name.equals(name)) {
+                    if(cn.leaves.length == 2) return cn.leaves[1 - i];
+                    Leaf[] ls = new Leaf[cn.leaves.length - 1];
+                    System.arraycopy(cn.leaves, 0, ls, 0, i);
+                    System.arraycopy(cn.leaves, i + 1, ls, i, ls.length - i);
+                    return new CollisionNode(cn.hash, ls);
+                }
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Helper method that puts a lone entry back under a root node.
+     */
+    private static BitmapNode wrap(Object entry, int shift) {
+        int h = (entry instanceof Leaf) ? ((Leaf) entry).hash
+                : ((CollisionNode) entry).hash;
+        return new BitmapNode(1 << ((h >>> shift) & 31),
+                new Object[] {entry});
+    }
+
+    /**
+     * Inner node. Holds one child for each set bit of the bitmap, in bit
+     * order.
+     */
+    static final class BitmapNode {
+
+        final int bitmap;
+        final Object[] children;
+
+        BitmapNode(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+    }
+
+    /**
+     * A single named Waypoint.
+     */
+    static final class Leaf {
+
+        final String name;
+        final int hash;
+        final Waypoint value;
+
+        Leaf(String name, int hash, Waypoint value) {
+            this.name = name;
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Waypoints whose names have identical hashes.
+     */
+    static final class CollisionNode {
+
+        final int hash;
+        final Leaf[] leaves;
+
+        CollisionNode(int hash, Leaf[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+    }
+
+    /**
+     * Depth-first walk over every Waypoint in a trie.
+     */
+    static final class TrieIterator implements Iterator<Waypoint> {
+
+        ArrayDeque<Object> stack = new ArrayDeque<>();
+        Leaf[] pendingLeaves = null;
+        int pendingIndex = 0;
+        Leaf next = null;
+
+        TrieIterator(BitmapNode root) {
+            stack.push(root);
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while(next == null) {
+                if(pendingLeaves != null) {
+                    if(pendingIndex < pendingLeaves.length) {
+                        next = pendingLeaves[pendingIndex++];
+                        return;
+                    }
+                    pendingLeaves = null;
+                }
+                if(stack.isEmpty()) return;
+                Object node = stack.pop();
+                if(node instanceof Leaf) next = (Leaf) node;
+                else if(node instanceof CollisionNode) {
+                    pendingLeaves = ((CollisionNode) node).leaves;
+                    pendingIndex = 0;
+                } else {
+                    Object[] c = ((BitmapNode) node).children;
+                    for(int i = c.length - 1; i >= 0; i--)
+                        stack.push(c[i]);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Waypoint next() {
+            if(next == null) throw new NoSuchElementException();
+            Waypoint w = next.value;
+            advance();
+            return w;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package disc.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+
+import disc.util.Fingerprint;
+import disc.util.WaypointException;
+
+/**
+ * Simple data structure for storing a named polygonal area of the map, such
+ * as a keep-out or slow-down zone. The kind of zone is a free-form word that
+ * the program using it gives meaning to. The String version of a Zone is as
+ * follows: <br>
+ * <br>
+ * name: kind, x0, y0, x1, y1, x2, y2, ...<br>
+ * <br>
+ * A Zone must have at least three corners. The last corner joins back up to
+ * the first. Zones only cover x and y; z is ignored.
+ *
+ * @author Liam Williams
+ * @version 0.1.1
+ */
+public class Zone {
+
+    protected String name;
+    protected String kind;
+    protected double[] xs;
+    protected double[] ys;
+    protected double minX, minY, maxX, maxY;
+
+    /**
+     * Constructs a {@link Zone} from a String Zone.
+     *
+     * @param arg0
+     *            The String to construct the Zone from
+     * @throws WaypointException
+     *             If the name, kind, or three corners are missing
+     */
+    public Zone(String arg0) throws WaypointException {
+        int o = arg0.indexOf(':');
+        if(o == -1) throw new WaypointException(
+                "Invalid Zone: does not define name.");
+        name = arg0.substring(0, o).trim();
+        String[] parts = arg0.substring(o + 1).split(",");
+        if(parts.length < 7 || parts.length % 2 == 0)
+            throw new WaypointException(
+                    "Invalid Zone: does not define a kind and at least three corners.");
+        kind = parts[0].trim();
+        ArrayList<Double> v = new ArrayList<>(parts.length - 1);
+        try {
+            for(int i = 1; i < parts.length; i++)
+                v.add(Double.valueOf(parts[i].trim()));
+        } catch(NumberFormatException e) {
+            throw new WaypointException("Invalid Zone: bad corner.", e);
+        }
+        xs = new double[v.size() / 2];
+        ys = new double[v.size() / 2];
+        for(int i = 0; i < xs.length; i++) {
+            xs[i] = v.get(i * 2);
+            ys[i] = v.get(i * 2 + 1);
+        }
+        bound();
+    }
+
+    /**
+     * Constructs a {@link Zone} from the given corners.
+     *
+     * @param name
+     *            The name of the Zone
+     * @param kind
+     *            The kind of Zone (eg KEEPOUT)
+     * @param xs
+     *            The x of each corner
+     * @param ys
+     *            The y of each corner
+     * @throws WaypointException
+     *             If there are fewer than three corners
+     */
+    public Zone(String name, String kind, double[] xs, double[] ys)
+            throws WaypointException {
+        if(xs.length < 3 || xs.length != ys.length)
+            throw new WaypointException(
+                    "Invalid Zone: does not define at least three corners.");
+        this.name = name;
+        this.kind = kind;
+        this.xs = xs.clone();
+        this.ys = ys.clone();
+        bound();
+    }
+
+    /**
+     * Helper method that works out the bounding box of the corners.
+     */
+    private void bound() {
+        minX = maxX = xs[0];
+        minY = maxY = ys[0];
+        for(int i = 1; i < xs.length; i++) {
+            minX = Math.min(minX, xs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+    }
+
+    /**
+     * Checks whether the given point is inside the {@link Zone}, using an
+     * even-odd ray cast.
+     *
+     * @param x
+     *            The x of the point
+     * @param y
+     *            The y of the point
+     * @return true if the point is inside
+     */
+    public boolean contains(double x, double y) {
+        if(x < minX || x > maxX || y < minY || y > maxY) return false;
+        boolean inside = false;
+        for(int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+            if((ys[i] > y) != (ys[j] > y) && x < (xs[j] - xs[i]) * (y - ys[i])
+                    / (ys[j] - ys[i]) + xs[i])
+                inside = !inside;
+        }
+        return inside;
+    }
+
+    /**
+     * Checks whether the x and y of the given {@link Waypoint} or
+     * {@link Position} is inside the {@link Zone}.
+     *
+     * @param p
+     *            The Waypoint to check
+     * @return true if it is inside
+     */
+    public boolean contains(Waypoint p) {
+        return contains(p.x, p.y);
+    }
+
+    /**
+     * @return the Name associated with this {@link Zone}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the Kind associated with this {@link Zone}
+     */
+    public String getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the number of corners of this {@link Zone}
+     */
+    public int getNumberOfCorners() {
+        return xs.length;
+    }
+
+    /**
+     * @return the X of the given corner
+     */
+    public double getX(int corner) {
+        return xs[corner];
+    }
+
+    /**
+     * @return the Y of the given corner
+     */
+    public double getY(int corner) {
+        return ys[corner];
+    }
+
+    /**
+     * @return a 64-bit fingerprint of the name, kind, and corners of this
+     *         {@link Zone}
+     */
+    public long fingerprint() {
+        Fingerprint f = new Fingerprint().add(name).add(kind).add(xs.length);
+        for(int i = 0; i < xs.length; i++)
+            f.add(xs[i]).add(ys[i]);
+        return f.get();
+    }
+
+    /**
+     * Constructs a constructor-readable String from the Zone's data.
+     *
+     * @return the String representation of the Zone's data.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("");
+        try {
+            writeTo(sb);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends the same text as toString() to the given Appendable.
+     *
+     * @param out
+     *            The Appendable to write to
+     * @throws IOException
+     *             If the Appendable cannot be written to
+     */
+    public void writeTo(Appendable out) throws IOException {
+        out.append(name).append(": ").append(kind);
+        for(int i = 0; i < xs.length; i++)
+            out.append(", ").append(Double.toString(xs[i])).append(", ")
+                    .append(Double.toString(ys[i]));
+    }
+}
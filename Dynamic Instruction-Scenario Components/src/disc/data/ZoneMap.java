@@ -0,0 +1,350 @@
+package disc.data;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.function.IntConsumer;
+
+import disc.util.Fingerprint;
+import disc.util.WaypointException;
+
+/**
+ * Data structure that holds a set of {@link Zone}s by name, with a grid index
+ * for quickly finding which Zones contain a point. Parses a .zone file, one
+ * Zone per line, or a String version of such a file, and can be stored in a
+ * DISC file next to the {@link WaypointMap}.
+ * <p>
+ * The grid covers the bounding box of every Zone, and each cell lists the
+ * Zones whose bounding boxes overlap it, so a lookup only tests the few Zones
+ * near the point. The grid is rebuilt on the first lookup after a change, and
+ * lookups write into an array supplied by the caller, so they don't allocate.
+ * getContaining() and isInside() are safe from any thread, even while Zones
+ * are being added or removed: the grid is built while holding the same lock
+ * as the changes, so it never sees a half-made change and is never kept once
+ * it is out of date. The other methods read the map directly and must not
+ * run at the same time as a change.
+ *
+ * @author Liam Williams
+ * @version 0.1.2
+ */
+public class ZoneMap {
+
+    Map<String, Zone> m = new LinkedHashMap<String, Zone>();
+    volatile Grid grid = null;
+
+    /**
+     * Blank constructor for creating an empty {@link ZoneMap}
+     */
+    public ZoneMap() {}
+
+    /**
+     * Creates a {@link ZoneMap} from a .zone file.
+     *
+     * @param input
+     *            The file to be read
+     * @throws FileNotFoundException
+     *             If the file doesn't exist
+     */
+    public ZoneMap(File input) throws FileNotFoundException {
+        parse(new Scanner(input));
+    }
+
+    /**
+     * Creates a {@link ZoneMap} from a String representation.
+     *
+     * @param input
+     *            The String to be read
+     */
+    public ZoneMap(String input) {
+        parse(new Scanner(input));
+    }
+
+    /**
+     * Reads the data of the file/String into the {@link ZoneMap}'s internal
+     * data.
+     */
+    private void parse(Scanner scn) {
+        while(scn.hasNextLine())
+            parseLine(scn.nextLine());
+        scn.close();
+    }
+
+    /**
+     * Reads a single line of a .zone file into the {@link ZoneMap}.
+     *
+     * @param line
+     *            The line to read
+     */
+    public void parseLine(String line) {
+        String tmp = line.trim();
+        if(!(tmp.startsWith("#") || tmp.isEmpty())) {
+            try {
+                addZone(new Zone(tmp));
+            } catch(WaypointException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Searches the internal map for a {@link Zone} of the given name.
+     *
+     * @param name
+     *            The name of the Zone
+     * @return The found Zone, or null if it does not exist.
+     */
+    public Zone get(String name) {
+        if(name != null) return m.get(name);
+        else return null;
+    }
+
+    /**
+     * Adds the given {@link Zone} to the {@link ZoneMap}, replacing any Zone
+     * with the same name.
+     *
+     * @param toAdd
+     *            The Zone to add
+     */
+    public synchronized void addZone(Zone toAdd) {
+        m.put(toAdd.getName(), toAdd);
+        grid = null;
+    }
+
+    /**
+     * Removes the {@link Zone} associated with the key.
+     *
+     * @param zoneName
+     *            The key to remove a Zone from
+     */
+    public synchronized void removeZone(String zoneName) {
+        if(m.remove(zoneName) != null) grid = null;
+    }
+
+    /**
+     * @return The number of {@link Zone}s in the map
+     */
+    public int size() {
+        return m.size();
+    }
+
+    /**
+     * @return true if there are no {@link Zone}s in the map
+     */
+    public boolean isEmpty() {
+        return m.isEmpty();
+    }
+
+    /**
+     * Finds every {@link Zone} that contains the given point.
+     *
+     * @param x
+     *            The x of the point
+     * @param y
+     *            The y of the point
+     * @param out
+     *            The array to write the Zones into
+     * @return The number of Zones found. Only as many as fit are written.
+     */
+    public int getContaining(double x, double y, Zone[] out) {
+        Grid g = grid;
+        if(g == null) g = buildGrid();
+        return g.find(x, y, out);
+    }
+
+    /**
+     * Finds every {@link Zone} that contains the x and y of the given
+     * {@link Waypoint} or {@link Position}.
+     *
+     * @param p
+     *            The Waypoint to check
+     * @param out
+     *            The array to write the Zones into
+     * @return The number of Zones found. Only as many as fit are written.
+     */
+    public int getContaining(Waypoint p, Zone[] out) {
+        return getContaining(p.x, p.y, out);
+    }
+
+    /**
+     * Checks whether any {@link Zone} of the given kind contains the given
+     * point.
+     *
+     * @param x
+     *            The x of the point
+     * @param y
+     *            The y of the point
+     * @param kind
+     *            The kind of Zone to look for
+     * @return true if such a Zone contains the point
+     */
+    public boolean isInside(double x, double y, String kind) {
+        Grid g = grid;
+        if(g == null) g = buildGrid();
+        return g.any(x, y, kind);
+    }
+
+    /**
+     * Helper method that builds the grid, holding the lock that changes to
+     * the map hold.
+     */
+    private synchronized Grid buildGrid() {
+        if(grid == null) grid = new Grid(m);
+        return grid;
+    }
+
+    /**
+     * Returns a Constructor-readable representation of the {@link ZoneMap}.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("");
+        try {
+            writeTo(sb);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends the Constructor-readable representation of the {@link ZoneMap}
+     * one Zone at a time.
+     *
+     * @param out
+     *            The Appendable to write to
+     * @throws IOException
+     *             If the Appendable cannot be written to
+     */
+    public void writeTo(Appendable out) throws IOException {
+        Iterator<String> iter = m.keySet().iterator();
+        while(iter.hasNext()) {
+            m.get(iter.next()).writeTo(out);
+            out.append("\r\n");
+        }
+    }
+
+    /**
+     * Returns a 64-bit fingerprint of every {@link Zone} in the map, combined
+     * without regard to order.
+     *
+     * @return the fingerprint of the map
+     */
+    public long fingerprint() {
+        long sum = 0;
+        for(Zone z : m.values())
+            sum += Fingerprint.mix(z.fingerprint());
+        return new Fingerprint().add(m.size()).add(sum).get();
+    }
+
+    /**
+     * Returns a new {@link ZoneMap} with the same {@link Zone}s.
+     */
+    @Override
+    public ZoneMap clone() {
+        ZoneMap c = new ZoneMap();
+        c.m.putAll(m);
+        return c;
+    }
+
+    /**
+     * Immutable grid index over a fixed set of {@link Zone}s. Each cell's
+     * candidate Zones are stored back to back in one array, with cellStart
+     * marking where each cell's run begins.
+     */
+    static final class Grid {
+
+        final Zone[] zones;
+        final double minX, minY, cellWidth, cellHeight;
+        final int columns, rows;
+        final int[] cellStart;
+        final int[] cellZones;
+
+        Grid(Map<String, Zone> m) {
+            zones = m.values().toArray(new Zone[m.size()]);
+            double x0 = Double.POSITIVE_INFINITY, y0 = x0;
+            double x1 = Double.NEGATIVE_INFINITY, y1 = x1;
+            for(Zone z : zones) {
+                x0 = Math.min(x0, z.minX);
+                y0 = Math.min(y0, z.minY);
+                x1 = Math.max(x1, z.maxX);
+                y1 = Math.max(y1, z.maxY);
+            }
+            int side = Math.max(1, Math.min(256,
+                    (int) Math.ceil(Math.sqrt(zones.length)) * 2));
+            minX = x0;
+            minY = y0;
+            columns = side;
+            rows = side;
+            cellWidth = Math.max((x1 - x0) / side, Double.MIN_NORMAL);
+            cellHeight = Math.max((y1 - y0) / side, Double.MIN_NORMAL);
+            cellStart = new int[columns * rows + 1];
+            for(Zone z : zones)
+                forCells(z, c -> cellStart[c + 1]++);
+            for(int c = 0; c < columns * rows; c++)
+                cellStart[c + 1] += cellStart[c];
+            cellZones = new int[cellStart[columns * rows]];
+            int[] fill = cellStart.clone();
+            for(int i = 0; i < zones.length; i++) {
+                final int zi = i;
+                forCells(zones[i], c -> cellZones[fill[c]++] = zi);
+            }
+        }
+
+        int find(double x, double y, Zone[] out) {
+            int c = cellOf(x, y);
+            if(c < 0) return 0;
+            int n = 0;
+            for(int i = cellStart[c]; i < cellStart[c + 1]; i++) {
+                Zone z = zones[cellZones[i]];
+                if(z.contains(x, y)) {
+                    if(n < out.length) out[n] = z;
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        boolean any(double x, double y, String kind) {
+            int c = cellOf(x, y);
+            if(c < 0) return false;
+            for(int i = cellStart[c]; i < cellStart[c + 1]; i++) {
+                Zone z = zones[cellZones[i]];
+                if(z.kind.equals(kind) && z.contains(x, y)) return true;
+            }
+            return false;
+        }
+
+        private int cellOf(double x, double y) {
+            if(zones.length == 0) return -1;
+            int cx = (int) Math.floor((x - minX) / cellWidth);
+            int cy = (int) Math.floor((y - minY) / cellHeight);
+            if(cx == columns) cx--;
+            if(cy == rows) cy--;
+            if(cx < 0 || cy < 0 || cx >= columns || cy >= rows) return -1;
+            return cy * columns + cx;
+        }
+
+        private void forCells(Zone z, IntConsumer c) {
+            int cx0 = clamp((int) Math.floor((z.minX - minX) / cellWidth),
+                    columns);
+            int cx1 = clamp((int) Math.floor((z.maxX - minX) / cellWidth),
+                    columns);
+            int cy0 = clamp((int) Math.floor((z.minY - minY) / cellHeight),
+                    rows);
+            int cy1 = clamp((int) Math.floor((z.maxY - minY) / cellHeight),
+                    rows);
+            for(int cy = cy0; cy <= cy1; cy++)
+                for(int cx = cx0; cx <= cx1; cx++)
+                    c.accept(cy * columns + cx);
+        }
+
+        private static int clamp(int v, int size) {
+            return Math.max(0, Math.min(size - 1, v));
+        }
+    }
+}
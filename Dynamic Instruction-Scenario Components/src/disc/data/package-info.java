@@ -1,4 +1,4 @@
-/**
- * Data structures for DISC-implementing programs to use.
- */
+/**
+ * Data structures for DISC-implementing programs to use.
+ */
 package disc.data;
\ No newline at end of file
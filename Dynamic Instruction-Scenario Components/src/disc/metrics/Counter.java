@@ -0,0 +1,61 @@
+package disc.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count of events, such as Instructions run. Spread over several cells
+ * internally, so threads counting at once don't contend. Counts nothing while
+ * {@link Metrics} is disabled.
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public class Counter implements Metric, CounterMBean {
+
+    final String name;
+    final LongAdder count = new LongAdder();
+
+    /**
+     * Creates a Counter. Use Metrics.counter() to make a registered one.
+     */
+    Counter(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment() {
+        if(Metrics.enabled) count.increment();
+    }
+
+    /**
+     * Adds the given amount to the count.
+     *
+     * @param n
+     *            The amount to add
+     */
+    public void add(long n) {
+        if(Metrics.enabled) count.add(n);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name + "=" + getCount();
+    }
+}
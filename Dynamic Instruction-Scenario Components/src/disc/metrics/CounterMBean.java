@@ -0,0 +1,20 @@
+package disc.metrics;
+
+/**
+ * JMX view of a {@link Counter}.
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public interface CounterMBean {
+
+    /**
+     * @return the count so far
+     */
+    long getCount();
+
+    /**
+     * Sets the count back to 0.
+     */
+    void reset();
+}
@@ -0,0 +1,39 @@
+package disc.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A value read when it is asked for, such as the number of Interpreters
+ * running. Costs nothing until read.
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public class Gauge implements Metric, GaugeMBean {
+
+    final String name;
+    final LongSupplier value;
+
+    /**
+     * Creates a Gauge. Use Metrics.gauge() to make a registered one.
+     */
+    Gauge(String name, LongSupplier value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    @Override
+    public long getValue() {
+        return value.getAsLong();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name + "=" + getValue();
+    }
+}
@@ -0,0 +1,15 @@
+package disc.metrics;
+
+/**
+ * JMX view of a {@link Gauge}.
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public interface GaugeMBean {
+
+    /**
+     * @return the current value
+     */
+    long getValue();
+}
@@ -0,0 +1,153 @@
+package disc.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The spread of a value, such as how long each Instruction took in
+ * nanoseconds. Values are counted in buckets that grow with the value: every
+ * power of two is split into 8 buckets, so a percentile is never off by more
+ * than an eighth, from nanoseconds up to hours, in a fixed 4 KB. Recording a
+ * value is a couple of atomic adds and never blocks. Records nothing while
+ * {@link Metrics} is disabled.
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public class Histogram implements Metric, HistogramMBean {
+
+    static final int SUB_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final int LINEAR = 2 * SUB_BUCKETS;
+    static final int BUCKETS = LINEAR + (63 - SUB_BITS - 1) * SUB_BUCKETS;
+
+    final String name;
+    final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    final LongAdder count = new LongAdder();
+    final LongAdder sum = new LongAdder();
+    final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Creates a Histogram. Use Metrics.histogram() to make a registered one.
+     */
+    Histogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value
+     *            The value to record
+     */
+    public void record(long value) {
+        if(!Metrics.enabled) return;
+        if(value < 0) value = 0;
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Records the nanoseconds since the given start time.
+     *
+     * @param start
+     *            The start time, from Metrics.start()
+     */
+    public void recordSince(long start) {
+        if(start != 0) record(System.nanoTime() - start);
+    }
+
+    /**
+     * Gets the value that the given fraction of recorded values are at or
+     * below, rounded up to the top of its bucket.
+     *
+     * @param fraction
+     *            The fraction, from 0 to 1 (eg 0.99 for the 99th percentile)
+     * @return The value, or 0 if nothing has been recorded
+     */
+    public long getPercentile(double fraction) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for(int i = 0; i < BUCKETS; i++)
+            total += counts[i] = buckets.get(i);
+        if(total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if(seen >= rank) return Math.min(upperBoundOf(i), getMax());
+        }
+        return getMax();
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    @Override
+    public long getMax() {
+        return max.get();
+    }
+
+    @Override
+    public long getMedian() {
+        return getPercentile(0.5);
+    }
+
+    @Override
+    public long get99thPercentile() {
+        return getPercentile(0.99);
+    }
+
+    @Override
+    public void reset() {
+        for(int i = 0; i < BUCKETS; i++)
+            buckets.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name + "[count=" + getCount() + ", mean=" + getMean()
+                + ", p50=" + getMedian() + ", p99=" + get99thPercentile()
+                + ", max=" + getMax() + "]";
+    }
+
+    /**
+     * Helper method that gets the bucket a value is counted in.
+     */
+    static int bucketOf(long value) {
+        if(value < LINEAR) return (int) value;
+        int e = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (e - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (e - SUB_BITS - 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Helper method that gets the largest value counted in a bucket.
+     */
+    static long upperBoundOf(int bucket) {
+        if(bucket < LINEAR) return bucket;
+        int e = (bucket - LINEAR) / SUB_BUCKETS + SUB_BITS + 1;
+        long sub = (bucket - LINEAR) % SUB_BUCKETS;
+        long low = (SUB_BUCKETS + sub) << (e - SUB_BITS);
+        return low + (1L << (e - SUB_BITS)) - 1;
+    }
+}
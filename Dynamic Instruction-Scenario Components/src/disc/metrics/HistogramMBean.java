@@ -0,0 +1,40 @@
+package disc.metrics;
+
+/**
+ * JMX view of a {@link Histogram}.
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public interface HistogramMBean {
+
+    /**
+     * @return the number of values recorded
+     */
+    long getCount();
+
+    /**
+     * @return the mean of the values recorded
+     */
+    double getMean();
+
+    /**
+     * @return the largest value recorded
+     */
+    long getMax();
+
+    /**
+     * @return the median of the values recorded
+     */
+    long getMedian();
+
+    /**
+     * @return the 99th percentile of the values recorded
+     */
+    long get99thPercentile();
+
+    /**
+     * Forgets every value recorded.
+     */
+    void reset();
+}
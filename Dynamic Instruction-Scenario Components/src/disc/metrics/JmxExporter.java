@@ -0,0 +1,77 @@
+package disc.metrics;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publishes {@link Metric}s as MBeans, so they can be watched with JConsole,
+ * VisualVM, or any other JMX client. Each one is registered as
+ * "disc:type=Counter,name=interpreter.commands" and so on, so names must not
+ * contain characters that ObjectNames reserve, such as commas. Add it with
+ * Metrics.addExporter(new JmxExporter()).
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public class JmxExporter implements MetricsExporter, Closeable {
+
+    final MBeanServer server;
+    final String domain;
+    final ArrayList<ObjectName> registered = new ArrayList<>();
+
+    /**
+     * Creates an exporter to the platform MBean server under the "disc"
+     * domain.
+     */
+    public JmxExporter() {
+        this(ManagementFactory.getPlatformMBeanServer(), "disc");
+    }
+
+    /**
+     * Creates an exporter to the given MBean server under the given domain.
+     *
+     * @param server
+     *            The MBeanServer to register with
+     * @param domain
+     *            The domain of the ObjectNames
+     */
+    public JmxExporter(MBeanServer server, String domain) {
+        this.server = server;
+        this.domain = domain;
+    }
+
+    @Override
+    public synchronized void added(Metric metric) {
+        try {
+            ObjectName n = new ObjectName(domain + ":type="
+                    + metric.getClass().getSimpleName() + ",name="
+                    + metric.getName());
+            if(server.isRegistered(n)) server.unregisterMBean(n);
+            server.registerMBean(metric, n);
+            registered.add(n);
+        } catch(JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Unregisters every MBean this exporter registered and stops exporting.
+     */
+    @Override
+    public synchronized void close() {
+        Metrics.removeExporter(this);
+        for(ObjectName n : registered) {
+            try {
+                if(server.isRegistered(n)) server.unregisterMBean(n);
+            } catch(JMException e) {
+                e.printStackTrace();
+            }
+        }
+        registered.clear();
+    }
+}
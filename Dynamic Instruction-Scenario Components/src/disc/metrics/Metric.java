@@ -0,0 +1,15 @@
+package disc.metrics;
+
+/**
+ * A named value kept by {@link Metrics}.
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public interface Metric {
+
+    /**
+     * @return the name the metric is registered under
+     */
+    String getName();
+}
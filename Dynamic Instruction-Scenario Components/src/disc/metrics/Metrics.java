@@ -0,0 +1,175 @@
+package disc.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The registry of every {@link Metric} in the program, by name. The rest of
+ * DISC registers its metrics here once, when each class is loaded, and keeps
+ * them in static fields, so recording never looks anything up.
+ * <p>
+ * Disabled by default. While disabled, Counters and Histograms ignore
+ * everything given to them and start() doesn't read the clock, so the cost
+ * left behind is one field read per call. Call enable(), or run with
+ * -Ddisc.metrics=true, to turn them on. Metrics are published by adding a
+ * {@link MetricsExporter}, such as a {@link JmxExporter}.
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public final class Metrics {
+
+    static volatile boolean enabled = Boolean.getBoolean("disc.metrics");
+
+    static final ConcurrentHashMap<String, Metric> metrics =
+            new ConcurrentHashMap<>();
+    static final CopyOnWriteArrayList<MetricsExporter> exporters =
+            new CopyOnWriteArrayList<>();
+
+    private Metrics() {}
+
+    /**
+     * Starts recording.
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * Stops recording. Values recorded so far are kept.
+     */
+    public static void disable() {
+        enabled = false;
+    }
+
+    /**
+     * @return true if metrics are being recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reads the clock for timing something with Histogram.recordSince().
+     *
+     * @return The current time in nanoseconds, or 0 if disabled
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Gets the {@link Counter} of the given name, registering it if there
+     * isn't one yet.
+     *
+     * @param name
+     *            The name of the Counter
+     * @return The Counter
+     * @throws IllegalArgumentException
+     *             If the name is taken by a different kind of Metric
+     */
+    public static Counter counter(String name) {
+        return register(name, Counter.class, () -> new Counter(name));
+    }
+
+    /**
+     * Gets the {@link Histogram} of the given name, registering it if there
+     * isn't one yet.
+     *
+     * @param name
+     *            The name of the Histogram
+     * @return The Histogram
+     * @throws IllegalArgumentException
+     *             If the name is taken by a different kind of Metric
+     */
+    public static Histogram histogram(String name) {
+        return register(name, Histogram.class, () -> new Histogram(name));
+    }
+
+    /**
+     * Gets the {@link Gauge} of the given name, registering one reading the
+     * given value if there isn't one yet.
+     *
+     * @param name
+     *            The name of the Gauge
+     * @param value
+     *            Reads the value of the Gauge
+     * @return The Gauge
+     * @throws IllegalArgumentException
+     *             If the name is taken by a different kind of Metric
+     */
+    public static Gauge gauge(String name, LongSupplier value) {
+        return register(name, Gauge.class, () -> new Gauge(name, value));
+    }
+
+    /**
+     * @param name
+     *            The name of the Metric
+     * @return the Metric of the given name, or null if there isn't one
+     */
+    public static Metric get(String name) {
+        return metrics.get(name);
+    }
+
+    /**
+     * @return a copy of every registered Metric
+     */
+    public static Collection<Metric> getMetrics() {
+        return Collections.unmodifiableList(new ArrayList<>(metrics.values()));
+    }
+
+    /**
+     * Resets every {@link Counter} and {@link Histogram}.
+     */
+    public static void resetAll() {
+        for(Metric m : metrics.values()) {
+            if(m instanceof Counter) ((Counter) m).reset();
+            else if(m instanceof Histogram) ((Histogram) m).reset();
+        }
+    }
+
+    /**
+     * Adds a {@link MetricsExporter}, telling it about every Metric
+     * registered so far.
+     *
+     * @param exporter
+     *            The MetricsExporter to add
+     */
+    public static synchronized void addExporter(MetricsExporter exporter) {
+        exporters.add(exporter);
+        for(Metric m : metrics.values())
+            exporter.added(m);
+    }
+
+    /**
+     * Stops telling the given {@link MetricsExporter} about new Metrics.
+     *
+     * @param exporter
+     *            The MetricsExporter to remove
+     */
+    public static void removeExporter(MetricsExporter exporter) {
+        exporters.remove(exporter);
+    }
+
+    /**
+     * Helper method that gets or registers a Metric, checking its kind.
+     */
+    private static synchronized <T extends Metric> T register(String name,
+            Class<T> type, Supplier<T> make) {
+        Metric m = metrics.get(name);
+        if(m == null) {
+            m = make.get();
+            metrics.put(name, m);
+            for(MetricsExporter e : exporters)
+                e.added(m);
+        }
+        if(!type.isInstance(m)) throw new IllegalArgumentException("Metric \""
+                + name + "\" is already a " + m.getClass().getSimpleName());
+        return type.cast(m);
+    }
+}
@@ -0,0 +1,22 @@
+package disc.metrics;
+
+/**
+ * Publishes {@link Metric}s somewhere outside the program, such as JMX or a
+ * telemetry link. Once added to {@link Metrics}, an exporter is told about
+ * every metric already registered, and then about each new one as it is
+ * registered. Metrics are live objects, so an exporter can keep them and read
+ * them whenever it likes.
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public interface MetricsExporter {
+
+    /**
+     * Called once for each {@link Metric}.
+     *
+     * @param metric
+     *            The Metric to publish
+     */
+    void added(Metric metric);
+}
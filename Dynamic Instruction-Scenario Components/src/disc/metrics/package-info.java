@@ -0,0 +1,5 @@
+/**
+ * Low-overhead counters, histograms, and gauges for watching DISC at run
+ * time, and ways of exporting them, such as over JMX.
+ */
+package disc.metrics;
\ No newline at end of file
@@ -0,0 +1,58 @@
+package disc.tools;
+
+import java.util.Map;
+
+import disc.data.Instruction;
+
+/**
+ * Runs a batch of {@link Instruction}s to the same {@link BatchTarget} in a
+ * single invokeBatch() call. Substitutes heap variables into the args the
+ * same way an {@link InstructionHandler} does.
+ * 
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+class BatchHandler implements Runnable {
+
+    BatchTarget target;
+    Instruction[] batch;
+    Map<String, String> heap;
+
+    /**
+     * Creates a new {@link BatchHandler}.
+     * 
+     * @param target
+     *            The BatchTarget to call
+     * @param batch
+     *            The Instructions to run, all to the same target
+     * @param heap
+     *            The heap to read variables from
+     */
+    public BatchHandler(BatchTarget target, Instruction[] batch,
+            Map<String, String> heap) {
+        this.target = target;
+        this.batch = batch;
+        this.heap = heap;
+    }
+
+    @Override
+    public void run() {
+        String[] methods = new String[batch.length];
+        String[][] args = new String[batch.length][];
+        for(int i = 0; i < batch.length; i++) {
+            String[] a = batch[i].getArgs();
+            methods[i] = a[0];
+            args[i] = new String[a.length - 1];
+            for(int j = 1; j < a.length; j++) {
+                String arg = a[j].trim();
+                String v = heap.get(arg);
+                args[i][j - 1] = v == null ? arg : v;
+            }
+        }
+        try {
+            target.invokeBatch(methods, args);
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package disc.tools;
+
+/**
+ * Interface for {@link Directory} objects that can take several commands in a
+ * single call, such as a hardware layer that can send many joint positions in
+ * one bus message. When batching is turned on in the {@link Interpreter}, a
+ * run of commands in a row to the same BatchTarget, for methods it says it can
+ * batch, is handed over in one invokeBatch() call instead of one reflective
+ * call each.
+ * 
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public interface BatchTarget {
+
+    /**
+     * @param method
+     *            The name of a method of this object
+     * @return true if calls to the method can be passed to invokeBatch()
+     */
+    boolean canBatch(String method);
+
+    /**
+     * Runs a batch of commands, in order.
+     * 
+     * @param methods
+     *            The method name of each command
+     * @param args
+     *            The args of each command, after variable substitution
+     */
+    void invokeBatch(String[] methods, String[][] args);
+}
@@ -0,0 +1,116 @@
+package disc.tools;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import disc.data.Scenario;
+
+/**
+ * Where a paused {@link Interpreter} was in its run: the position, heap, and
+ * loop counts of the Scenario it was running and of every subroutine call in
+ * progress. Holds no Instructions, only names and positions, so it is small
+ * and can be serialized and kept while the robot is powered down. Handing it
+ * to restore() on a new Interpreter over the same {@link Scenario} carries on
+ * from the same place without running anything again.
+ * <p>
+ * Each Scenario is recorded with its fingerprint, so restoring onto a
+ * Scenario that has since been edited is refused rather than carrying on from
+ * the wrong place.
+ * <p>
+ * For an Interpreter running an InstructionStream, any Instruction it had
+ * already taken from the stream but not yet run is kept as a line of text,
+ * and is run first after restore().
+ *
+ * @author Liam Williams
+ * @version 0.1.1
+ */
+public class Checkpoint implements Serializable {
+
+    private static final long serialVersionUID = 4392168830161274917L;
+
+    final State[] frames;
+    final String[] pending;
+
+    /**
+     * Constructs a Checkpoint from the state of each frame, outermost first,
+     * and the lines of the Instructions taken from a stream but not yet run.
+     * Use Interpreter.checkpoint() to make one.
+     */
+    Checkpoint(State[] frames, String[] pending) {
+        this.frames = frames;
+        this.pending = pending;
+    }
+
+    /**
+     * @return the name of the {@link Scenario} that was being run, or null if
+     *         it was not a named Scenario
+     */
+    public String getScenarioName() {
+        return frames[0].scenario;
+    }
+
+    /**
+     * @return the fingerprint of the {@link Scenario} that was being run
+     */
+    public long getFingerprint() {
+        return frames[0].fingerprint;
+    }
+
+    /**
+     * @return the index of the next Instruction of the Scenario that was being
+     *         run
+     */
+    public int getPosition() {
+        return frames[0].position;
+    }
+
+    /**
+     * @return the number of subroutine calls that were in progress
+     */
+    public int getDepth() {
+        return frames.length - 1;
+    }
+
+    /**
+     * @return the lines of the Instructions taken from a stream but not yet
+     *         run, in order
+     */
+    public String[] getPending() {
+        return pending == null ? new String[0] : pending.clone();
+    }
+
+    /**
+     * @return the heap of the Scenario that was being run
+     */
+    public Map<String, String> getHeap() {
+        return Collections.unmodifiableMap(frames[0].heap);
+    }
+
+    /**
+     * The state of one Scenario in the run.
+     */
+    static final class State implements Serializable {
+
+        private static final long serialVersionUID = -2650719187240516431L;
+
+        final String scenario;
+        final long fingerprint;
+        final int position;
+        final HashMap<String, String> heap;
+        final HashMap<Integer, Integer> loops;
+        final String returnVar;
+
+        State(String scenario, long fingerprint, int position,
+                Map<String, String> heap, Map<Integer, Integer> loops,
+                String returnVar) {
+            this.scenario = scenario;
+            this.fingerprint = fingerprint;
+            this.position = position;
+            this.heap = new HashMap<>(heap);
+            this.loops = new HashMap<>(loops);
+            this.returnVar = returnVar;
+        }
+    }
+}
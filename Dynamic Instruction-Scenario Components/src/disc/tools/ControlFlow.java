@@ -0,0 +1,264 @@
+package disc.tools;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import disc.data.Instruction;
+import disc.data.Instruction.InstructionType;
+import disc.data.InstructionCursor;
+import disc.data.InstructionSequence;
+
+/**
+ * Runs the control-flow {@link Instruction}s of a Scenario inside the
+ * {@link Interpreter}, moving its {@link InstructionCursor} instead of handing
+ * them to an {@link InstructionHandler}. Understands:
+ * <ul>
+ * <li>control.label, name: marks a place to jump to. Does nothing when run.
+ * <li>control.jump, name: carries on from the label.
+ * <li>control.loop, name, n: jumps back to the label n times, then carries on
+ * past the loop. Runs n more times the next time it is reached.
+ * <li>control.if, var, op, value, name: jumps to the label if the heap
+ * variable compares true with the value. op is one of ==, !=, &lt;, &lt;=, &gt;,
+ * or &gt;=. Values that are both numbers are compared as numbers, otherwise as
+ * Strings. A variable that isn't set compares as "".
+ * <li>control.let, var, value: sets a heap variable.
+ * </ul>
+ * Where a value is the name of a heap variable, the variable's value is used.
+ * Any other control Instruction is handed to an InstructionHandler as before.
+ * <p>
+ * Literal loop counts and if operators are checked when the sequence is
+ * loaded. A loop count taken from a heap variable that isn't a whole number
+ * is reported and the loop is left, rather than stopping the run.
+ * <p>
+ * The label table of each sequence is built once and shared by every
+ * Interpreter running it. Loop counts belong to each run.
+ *
+ * @author Liam Williams
+ * @version 0.1.3
+ */
+final class ControlFlow {
+
+    static final Map<InstructionSequence, ControlFlow> cache =
+            new WeakHashMap<>();
+
+    final Map<String, Integer> labels = new HashMap<>();
+
+    /**
+     * Builds the label table of the given sequence, checking that every jump
+     * goes to a label that exists, that every literal loop count is a whole
+     * number, and that every if has a known operator.
+     *
+     * @throws IllegalArgumentException
+     *             If a label is defined twice, a jump has no label, a loop
+     *             count is not a whole number, or an operator is unknown
+     */
+    ControlFlow(InstructionSequence seq) {
+        int n = seq.getNumberOfInstructions();
+        for(int i = 0; i < n; i++) {
+            String[] args = controlArgs(seq.getInstruction(i));
+            if(args != null && args[0].equals("label") && args.length > 1) {
+                if(labels.put(args[1], i) != null)
+                    throw new IllegalArgumentException(
+                            "Label defined twice: " + args[1]);
+            }
+        }
+        for(int i = 0; i < n; i++) {
+            String[] args = controlArgs(seq.getInstruction(i));
+            String label = args == null ? null : targetOf(args);
+            if(label != null && !labels.containsKey(label))
+                throw new IllegalArgumentException("Unknown label \"" + label
+                        + "\" at instruction " + i);
+            if(args != null) check(args, i);
+        }
+    }
+
+    /**
+     * Gets the shared ControlFlow of a sequence, building it the first time.
+     *
+     * @param seq
+     *            The InstructionSequence to get the ControlFlow of
+     * @return The ControlFlow
+     */
+    static ControlFlow of(InstructionSequence seq) {
+        synchronized(cache) {
+            ControlFlow c = cache.get(seq);
+            if(c == null) {
+                c = new ControlFlow(seq);
+                cache.put(seq, c);
+            }
+            return c;
+        }
+    }
+
+    /**
+     * Runs the given {@link Instruction} if it is one of the control-flow
+     * forms, which may move the cursor.
+     *
+     * @param inst
+     *            The Instruction just taken from the cursor
+     * @param cursor
+     *            The cursor of the run
+     * @param heap
+     *            The heap of the run
+     * @param loops
+     *            How many times each loop has jumped back so far, by index
+     * @return true if the Instruction was run, false if it should be handed to
+     *         an InstructionHandler
+     */
+    boolean execute(Instruction inst, InstructionCursor cursor,
+            Map<String, String> heap, Map<Integer, Integer> loops) {
+        String[] args = controlArgs(inst);
+        if(args == null) return false;
+        switch(args[0]) {
+            case "label":
+                return true;
+            case "jump":
+                cursor.seek(labels.get(args[1]));
+                return true;
+            case "loop": {
+                int at = cursor.position() - 1;
+                int done = loops.getOrDefault(at, 0);
+                int times;
+                try {
+                    times = Integer.parseInt(valueOf(args[2], heap));
+                } catch(NumberFormatException e) {
+                    e.printStackTrace();
+                    times = 0;
+                }
+                if(done < times) {
+                    loops.put(at, done + 1);
+                    cursor.seek(labels.get(args[1]));
+                } else loops.remove(at);
+                return true;
+            }
+            case "if":
+                if(compare(heap.getOrDefault(args[1], ""), args[2],
+                        valueOf(args[3], heap)))
+                    cursor.seek(labels.get(args[4]));
+                return true;
+            case "let":
+                heap.put(args[1], valueOf(args[2], heap));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Helper method that gets the args of a well-formed control-flow
+     * Instruction, or null if it isn't one.
+     */
+    private static String[] controlArgs(Instruction inst) {
+        if(inst.getT() != InstructionType.CONTROL_STATE) return null;
+        String[] args = inst.getArgs();
+        if(args == null || args.length == 0) return null;
+        switch(args[0]) {
+            case "label":
+            case "jump":
+                return args.length >= 2 ? args : null;
+            case "let":
+            case "loop":
+                return args.length >= 3 ? args : null;
+            case "if":
+                return args.length >= 5 ? args : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Helper method that gets the label a control-flow Instruction jumps to.
+     */
+    private static String targetOf(String[] args) {
+        switch(args[0]) {
+            case "jump":
+            case "loop":
+                return args[1];
+            case "if":
+                return args[4];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Helper method that checks the literal loop count or the operator of a
+     * control-flow Instruction.
+     */
+    private static void check(String[] args, int i) {
+        switch(args[0]) {
+            case "loop":
+                if(isNumber(args[2])) {
+                    try {
+                        Integer.parseInt(args[2]);
+                        return;
+                    } catch(NumberFormatException e) {
+                        throw new IllegalArgumentException("Bad loop count \""
+                                + args[2] + "\" at instruction " + i);
+                    }
+                }
+                return;
+            case "if":
+                switch(args[2]) {
+                    case "==":
+                    case "!=":
+                    case "<":
+                    case "<=":
+                    case ">":
+                    case ">=":
+                        return;
+                    default:
+                        throw new IllegalArgumentException("Unknown operator \""
+                                + args[2] + "\" at instruction " + i);
+                }
+            default:
+                return;
+        }
+    }
+
+    /**
+     * Helper method that tells a literal number from a heap variable's name.
+     */
+    private static boolean isNumber(String arg) {
+        if(arg.isEmpty()) return false;
+        char c = arg.charAt(0);
+        return Character.isDigit(c) || c == '-' || c == '+' || c == '.';
+    }
+
+    /**
+     * Helper method that swaps a heap variable's name for its value.
+     */
+    private static String valueOf(String arg, Map<String, String> heap) {
+        String v = heap.get(arg);
+        return v == null ? arg : v;
+    }
+
+    /**
+     * Helper method that compares two values with the given operator.
+     */
+    private static boolean compare(String a, String op, String b) {
+        int c;
+        try {
+            c = Double.compare(Double.parseDouble(a), Double.parseDouble(b));
+        } catch(NumberFormatException e) {
+            c = a.compareTo(b);
+        }
+        switch(op) {
+            case "==":
+                return c == 0;
+            case "!=":
+                return c != 0;
+            case "<":
+                return c < 0;
+            case "<=":
+                return c <= 0;
+            case ">":
+                return c > 0;
+            case ">=":
+                return c >= 0;
+            default:
+                throw new IllegalArgumentException("Unknown operator: " + op);
+        }
+    }
+}
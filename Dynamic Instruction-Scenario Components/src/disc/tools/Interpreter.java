@@ -1,87 +1,749 @@
-package disc.tools;
-
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-
-import disc.data.Instruction;
-import disc.data.Scenario;
-
-/**
- * Dynamic interpreter that can run an entire {@link Scenario} using method
- * lookups and a variable heaps. Can handle a variable return from a method and
- * then variable substitution in a later {@link Instruction}. Defaults to
- * discarding the method return unless the Instruction specifically has a
- * "return" arg in it giving the variable a name (eg "return number"). If
- * objects are being passed around as variables then lossless serialization
- * (using the toString() method) and deserialization (using a Constructor with a
- * String as the only argument) is expected. <br>
- * The Interpreter uses two Threads. One for the Interpreter itself (which only
- * happens if you properly call start() instead of run()) and one for handling
- * each Instruction. If an Instruction or called method causes an error or
- * Exception, the Thread will stop and the next Instruction will be picked up
- * and handled by a new Thread.
- * 
- * @author Liam Williams
- * @version 0.2.1
- */
-public class Interpreter extends Thread {
-
-    protected ExecutorService executor = Executors.newSingleThreadExecutor();
-
-    protected Directory dir;
-    protected Scenario work;
-    protected Queue<Instruction> q;
-    protected Map<String, String> heap = new HashMap<>();
-    protected long timeout = 1000;
-
-    /**
-     * Instantiates a new {@link Interpreter} with the given {@link Directory}
-     * to execute the given {@link Scenario}.
-     * 
-     * @param dir
-     *            The Directory to lookup methods from
-     * @param scenario
-     *            The Scenario to execute
-     */
-    public Interpreter(Directory dir, Scenario scenario) {
-        this.dir = dir;
-        this.work = scenario;
-    }
-
-    /**
-     * Pulls the Queue of {@link Instruction}s from the {@link Scenario}.
-     */
-    private void init() {
-        q = work.getInstructionQueue();
-    }
-
-    /**
-     * Use start() to have this method called inside its own thread; runs the
-     * interpreter.
-     */
-    @Override
-    public void run() {
-        if(work != null) init();
-        else q = null;
-
-        Future<?> f = null;
-
-        while(q.peek() != null) {
-            if(f == null || f.isDone()) {
-                f = executor
-                        .submit(new InstructionHandler(q.remove(), dir, heap));
-            }
-            try {
-                Interpreter.sleep(5);
-            } catch(InterruptedException e) {
-                q.clear();
-                Thread.currentThread().interrupt();
-            }
-        }
-    }
-
+package disc.tools;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import disc.data.Instruction;
+import disc.data.Instruction.InstructionType;
+import disc.data.InstructionCursor;
+import disc.data.InstructionSequence;
+import disc.data.InstructionStream;
+import disc.data.Scenario;
+import disc.metrics.Counter;
+import disc.metrics.Histogram;
+import disc.metrics.Metrics;
+import disc.util.ScenarioCompressor;
+
+/**
+ * Dynamic interpreter that can run an entire {@link Scenario} using method
+ * lookups and a variable heaps. Can handle a variable return from a method and
+ * then variable substitution in a later {@link Instruction}. Defaults to
+ * discarding the method return unless the Instruction specifically has a
+ * "return" arg in it giving the variable a name (eg "return number"). If
+ * objects are being passed around as variables then lossless serialization
+ * (using the toString() method) and deserialization (using a Constructor with a
+ * String as the only argument) is expected. <br>
+ * The Interpreter uses two Threads. One for the Interpreter itself (which only
+ * happens if you properly call start() instead of run()) and one for handling
+ * each Instruction. If an Instruction or called method causes an error or
+ * Exception, the Thread will stop and the next Instruction will be picked up
+ * and handled by a new Thread.
+ * <br>
+ * A {@link RoutePrefetcher} can be attached to plan routes for upcoming
+ * navigation Instructions while the current one is still executing.
+ * <br>
+ * The Interpreter walks its Scenario with an {@link InstructionCursor}, so any
+ * number of Interpreters can run the same Scenario without copying it.
+ * Control-flow Instructions (labels, jumps, loops, conditionals, and heap
+ * assignments) move the cursor directly, without a handler thread; see
+ * {@link ControlFlow} for the forms understood.
+ * <br>
+ * With a library set, "control.call, name, arg0, arg1, ..., return var" runs
+ * the Scenario of that name from the library as a subroutine, with its own
+ * heap holding the args as arg0, arg1, and so on. When it finishes, whatever
+ * it set "return" to is stored in var, and the caller carries on.
+ * <br>
+ * With a batch size set, a run of commands in a row to the same
+ * {@link BatchTarget}, for methods it can batch, is handed to a
+ * {@link BatchHandler} as one call. Commands that store a "return" variable
+ * are never batched.
+ * <br>
+ * Methods that return a CompletableFuture or CompletionStage free up the
+ * handler thread as soon as they return; the Interpreter waits for the stage
+ * to complete before moving on, without a thread blocked on it.
+ * <br>
+ * An Interpreter made with an {@link InstructionStream} runs Instructions as
+ * they arrive instead of from a fixed Scenario, until the stream is closed.
+ * It waits on the stream and on each command finishing directly, rather than
+ * checking every few milliseconds. Heap assignments, subroutine calls, and
+ * batching work as usual; labels and jumps only work inside subroutines. An
+ * Instruction that fails is reported and the stream carries on.
+ * <br>
+ * pauseExecution() stops the Interpreter handing out new commands once the
+ * current one has finished, without losing its place, and resumeExecution()
+ * carries on. While paused, step() lets exactly one more command run, and
+ * commands are not batched, so a step never runs more than one. A paused
+ * Interpreter can be saved with checkpoint(), and a new one can pick up from
+ * the {@link Checkpoint} with restore(). An Instruction already taken from a
+ * stream and waiting to run is saved with it.
+ * <br>
+ * While {@link Metrics} is enabled, the Interpreter counts the commands it
+ * hands out and the control-flow Instructions it runs itself, and samples the
+ * size of its heap and the depth of its stream.
+ * 
+ * @author Liam Williams
+ * @version 0.2.16
+ */
+public class Interpreter extends Thread {
+
+    protected ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    protected Directory dir;
+    protected InstructionSequence work;
+    protected InstructionCursor cursor;
+    protected Map<String, String> heap = new HashMap<>();
+    protected long timeout = 1000;
+    protected RoutePrefetcher<?> prefetcher = null;
+    protected int lookahead = 0;
+    protected Map<Integer, Integer> loops = new HashMap<>();
+    protected ScenarioCompressor library = null;
+    ControlFlow flow;
+    ArrayDeque<Frame> frames = new ArrayDeque<>();
+    protected int batchSize = 1;
+    protected InstructionStream stream = null;
+    final Object gate = new Object();
+    volatile boolean paused = false;
+    int steps = 0;
+    boolean idle = false;
+    ArrayDeque<Frame> restored = null;
+    ArrayDeque<Instruction> held = new ArrayDeque<>();
+
+    /**
+     * The most control-flow Instructions run in a row before the Interpreter
+     * sleeps, so that a jump-only loop can still be interrupted.
+     */
+    static final int MAX_INLINE_STEPS = 1000;
+
+    /**
+     * The most subroutine calls that can be running inside each other.
+     */
+    static final int MAX_CALL_DEPTH = 64;
+
+    static final Counter COMMANDS = Metrics.counter("interpreter.commands");
+    static final Counter CONTROL = Metrics.counter("interpreter.control");
+    static final Histogram HEAP_SIZE = Metrics
+            .histogram("interpreter.heap.size");
+    static final Histogram STREAM_DEPTH = Metrics
+            .histogram("interpreter.stream.depth");
+    static final AtomicInteger RUNNING = new AtomicInteger();
+
+    static {
+        Metrics.gauge("interpreter.running", RUNNING::get);
+    }
+
+    /**
+     * Instantiates a new {@link Interpreter} with the given {@link Directory}
+     * to execute the given {@link Scenario}.
+     * 
+     * @param dir
+     *            The Directory to lookup methods from
+     * @param scenario
+     *            The Scenario to execute
+     */
+    public Interpreter(Directory dir, Scenario scenario) {
+        this(dir, (InstructionSequence) scenario);
+    }
+
+    /**
+     * Instantiates a new {@link Interpreter} with the given {@link Directory}
+     * to execute the given {@link InstructionSequence}.
+     * 
+     * @param dir
+     *            The Directory to lookup methods from
+     * @param sequence
+     *            The InstructionSequence to execute
+     */
+    public Interpreter(Directory dir, InstructionSequence sequence) {
+        this.dir = dir;
+        this.work = sequence;
+    }
+
+    /**
+     * Instantiates a new {@link Interpreter} with the given {@link Directory}
+     * to execute {@link Instruction}s from the given {@link InstructionStream}
+     * as they arrive.
+     * 
+     * @param dir
+     *            The Directory to lookup methods from
+     * @param stream
+     *            The InstructionStream to take Instructions from
+     */
+    public Interpreter(Directory dir, InstructionStream stream) {
+        this(dir, InstructionSequence.of());
+        this.stream = stream;
+    }
+
+    /**
+     * Attaches a {@link RoutePrefetcher}, which is given the next "lookahead"
+     * {@link Instruction}s each time one is handed to a new thread.
+     * 
+     * @param prefetcher
+     *            The RoutePrefetcher to use, or null to stop prefetching
+     * @param lookahead
+     *            How many upcoming Instructions to look at
+     */
+    public void setRoutePrefetcher(RoutePrefetcher<?> prefetcher,
+            int lookahead) {
+        this.prefetcher = prefetcher;
+        this.lookahead = lookahead;
+    }
+
+    /**
+     * Sets the {@link ScenarioCompressor} that "control.call" Instructions
+     * find their Scenarios in, linking it if it hasn't been already.
+     * 
+     * @param library
+     *            The ScenarioCompressor to call Scenarios from
+     * @throws IllegalArgumentException
+     *             If a Scenario in it calls one that isn't there
+     */
+    public void setLibrary(ScenarioCompressor library) {
+        library.link();
+        this.library = library;
+    }
+
+    /**
+     * Sets the most commands to hand to a {@link BatchTarget} in one call.
+     * 
+     * @param batchSize
+     *            The largest batch, or 1 to turn batching off
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Stops handing out new commands once the current one has finished. The
+     * Interpreter keeps its place until resumeExecution() or step() is
+     * called. Can be called before start() to start paused.
+     */
+    public void pauseExecution() {
+        synchronized(gate) {
+            paused = true;
+        }
+    }
+
+    /**
+     * Carries on after pauseExecution().
+     */
+    public void resumeExecution() {
+        synchronized(gate) {
+            paused = false;
+            steps = 0;
+            gate.notifyAll();
+        }
+    }
+
+    /**
+     * Lets a paused Interpreter run one more command, along with any
+     * control-flow Instructions before it. Does nothing if not paused.
+     */
+    public void step() {
+        synchronized(gate) {
+            if(paused) {
+                steps++;
+                gate.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return true if pauseExecution() has been called without a
+     *         resumeExecution() since
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Saves where a paused Interpreter is, waiting for its current command to
+     * finish first.
+     * 
+     * @return The Checkpoint
+     * @throws InterruptedException
+     *             If interrupted while waiting
+     * @throws IllegalStateException
+     *             If the Interpreter is running and not paused, or hasn't
+     *             started
+     */
+    public Checkpoint checkpoint() throws InterruptedException {
+        synchronized(gate) {
+            awaitIdle();
+            ArrayList<Checkpoint.State> states = new ArrayList<>();
+            Iterator<Frame> it = frames.descendingIterator();
+            while(it.hasNext()) {
+                Frame fr = it.next();
+                states.add(stateOf(fr.cursor, fr.heap, fr.loops,
+                        fr.returnVar, states.isEmpty()));
+            }
+            states.add(stateOf(cursor, heap, loops, null, states.isEmpty()));
+            String[] pending = new String[held.size()];
+            int i = 0;
+            for(Instruction inst : held)
+                pending[i++] = inst.toString();
+            return new Checkpoint(
+                    states.toArray(new Checkpoint.State[states.size()]),
+                    pending);
+        }
+    }
+
+    /**
+     * Carries on from the given {@link Checkpoint} instead of from where the
+     * Interpreter is. If the Interpreter hasn't started, it starts from the
+     * Checkpoint; otherwise it must be paused, and carries on from the
+     * Checkpoint once resumed.
+     * 
+     * @param checkpoint
+     *            The Checkpoint to carry on from
+     * @throws InterruptedException
+     *             If interrupted while waiting for the current command
+     * @throws IllegalArgumentException
+     *             If the Checkpoint was taken of a different Scenario, or
+     *             calls a Scenario that isn't in the library
+     * @throws IllegalStateException
+     *             If the Interpreter is running and not paused, or finished
+     */
+    public void restore(Checkpoint checkpoint) throws InterruptedException {
+        ArrayDeque<Frame> built = rebuild(checkpoint);
+        ArrayDeque<Instruction> pending = new ArrayDeque<>();
+        for(String line : checkpoint.getPending())
+            pending.add(new Instruction(line));
+        synchronized(gate) {
+            if(cursor == null) {
+                restored = built;
+                held = pending;
+                return;
+            }
+            awaitIdle();
+            if(!isAlive()) throw new IllegalStateException(
+                    "The Interpreter has finished.");
+            install(built);
+            held = pending;
+        }
+    }
+
+    /**
+     * Helper method that waits, holding the gate, until a paused Interpreter
+     * has finished its current command.
+     */
+    private void awaitIdle() throws InterruptedException {
+        if(!paused && isAlive()) throw new IllegalStateException(
+                "Pause the Interpreter first.");
+        while(!idle && isAlive())
+            gate.wait();
+        if(cursor == null) throw new IllegalStateException(
+                "The Interpreter has not started.");
+    }
+
+    /**
+     * Helper method that records the state of one frame.
+     */
+    private Checkpoint.State stateOf(InstructionCursor c,
+            Map<String, String> h, Map<Integer, Integer> l, String returnVar,
+            boolean outermost) {
+        InstructionSequence seq = c.getSequence();
+        String name = null;
+        long fp = 0;
+        if(seq instanceof Scenario) {
+            name = ((Scenario) seq).getName();
+            fp = ((Scenario) seq).fingerprint();
+        }
+        int position = outermost && stream != null ? 0 : c.position();
+        return new Checkpoint.State(name, fp, position, h, l, returnVar);
+    }
+
+    /**
+     * Helper method that rebuilds the frames of a Checkpoint against this
+     * Interpreter's Scenario and library, innermost on top.
+     */
+    private ArrayDeque<Frame> rebuild(Checkpoint checkpoint) {
+        ArrayDeque<Frame> built = new ArrayDeque<>();
+        for(int i = 0; i < checkpoint.frames.length; i++) {
+            Checkpoint.State s = checkpoint.frames[i];
+            InstructionSequence seq = work;
+            if(i > 0) {
+                if(library == null) throw new IllegalStateException(
+                        "No library set to call \"" + s.scenario + "\" from.");
+                seq = library.getScenarioByName(s.scenario);
+                if(seq == null) throw new IllegalArgumentException(
+                        "Unknown Scenario \"" + s.scenario + "\".");
+            }
+            if(seq instanceof Scenario
+                    && ((Scenario) seq).fingerprint() != s.fingerprint)
+                throw new IllegalArgumentException("Checkpoint was taken of "
+                        + "a different version of \"" + s.scenario + "\".");
+            InstructionCursor c = seq.cursor();
+            if(i > 0 || stream == null) c.seek(s.position);
+            built.push(new Frame(c, ControlFlow.of(seq),
+                    new HashMap<>(s.heap), new HashMap<>(s.loops),
+                    s.returnVar));
+        }
+        return built;
+    }
+
+    /**
+     * Helper method that swaps in rebuilt frames, innermost on top.
+     */
+    private void install(ArrayDeque<Frame> built) {
+        Frame top = built.pop();
+        cursor = top.cursor;
+        flow = top.flow;
+        heap = top.heap;
+        loops = top.loops;
+        frames = built;
+    }
+
+    /**
+     * Helper method that waits while paused with no steps left.
+     */
+    private void awaitGo() throws InterruptedException {
+        synchronized(gate) {
+            while(paused && steps == 0) {
+                idle = true;
+                gate.notifyAll();
+                gate.wait();
+            }
+            idle = false;
+        }
+    }
+
+    /**
+     * Helper method that uses up a step after a command is handed out.
+     */
+    private void stepped() {
+        synchronized(gate) {
+            if(steps > 0) steps--;
+        }
+    }
+
+    /**
+     * Helper method that makes the handler for the next command, gathering
+     * any commands after it that can be batched with it.
+     */
+    private Runnable handlerFor(Instruction next) {
+        BatchTarget target = batchTargetOf(next);
+        if(target == null) return new InstructionHandler(next, dir, heap);
+        ArrayList<Instruction> batch = new ArrayList<>();
+        batch.add(next);
+        int max = paused ? 1 : batchSize;
+        while(batch.size() < max) {
+            boolean fromStream = fromStream();
+            Instruction peek = fromStream ? stream.peek() : cursor.peek();
+            if(peek == null || batchTargetOf(peek) != target) break;
+            batch.add(fromStream ? stream.poll() : cursor.next());
+        }
+        if(batch.size() == 1) return new InstructionHandler(next, dir, heap);
+        return new BatchHandler(target,
+                batch.toArray(new Instruction[batch.size()]), heap);
+    }
+
+    /**
+     * Helper method that checks whether the next Instruction comes from the
+     * stream rather than the cursor.
+     */
+    private boolean fromStream() {
+        return stream != null && !cursor.hasNext() && frames.isEmpty();
+    }
+
+    /**
+     * Helper method that hands a command to a new handler.
+     * 
+     * @return A Future that is done once the command has finished
+     */
+    private Future<?> submit(Instruction next) {
+        COMMANDS.increment();
+        HEAP_SIZE.record(heap.size());
+        Runnable h = handlerFor(next);
+        return CompletableFuture.runAsync(h, executor)
+                .thenCompose(v -> completionOf(h));
+    }
+
+    /**
+     * Helper method that gets the CompletableFuture that completes when a
+     * handler's work is done, including any asynchronous method it called.
+     */
+    private static CompletableFuture<?> completionOf(Runnable h) {
+        if(h instanceof InstructionHandler)
+            return ((InstructionHandler) h).getCompletion();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Helper method that gets the {@link BatchTarget} a command can be batched
+     * on, or null if it can't be.
+     */
+    private BatchTarget batchTargetOf(Instruction inst) {
+        if(batchSize < 2 || inst.getT() != InstructionType.COMMAND
+                || !dir.containsObject(inst.getTarget()))
+            return null;
+        Object o = dir.lookupObject(inst.getTarget());
+        if(!(o instanceof BatchTarget)) return null;
+        String[] args = inst.getArgs();
+        for(int i = 1; i < args.length; i++)
+            if(Instruction.returnVarOf(args[i]) != null) return null;
+        return ((BatchTarget) o).canBatch(args[0]) ? (BatchTarget) o : null;
+    }
+
+    /**
+     * Starts a new {@link InstructionCursor} over the {@link Scenario} and
+     * looks up its label table.
+     */
+    private void init() {
+        cursor = work.cursor();
+        flow = ControlFlow.of(work);
+        loops.clear();
+        frames.clear();
+    }
+
+    /**
+     * Helper method that starts running a subroutine, saving where the
+     * caller was.
+     */
+    private void call(String name, String[] args) {
+        if(library == null) throw new IllegalStateException(
+                "No library set to call \"" + name + "\" from.");
+        if(frames.size() >= MAX_CALL_DEPTH) throw new IllegalStateException(
+                "Calls nested deeper than " + MAX_CALL_DEPTH + " calling \""
+                        + name + "\".");
+        Scenario callee = library.getScenarioByName(name);
+        if(callee == null) throw new IllegalStateException(
+                "Unknown Scenario \"" + name + "\".");
+        Map<String, String> calleeHeap = new HashMap<>();
+        String returnVar = null;
+        int n = 0;
+        for(int i = 2; i < args.length; i++) {
+            String arg = args[i].trim();
+            String var = Instruction.returnVarOf(arg);
+            if(var != null) returnVar = var.isEmpty() ? null : var;
+            else {
+                String v = heap.get(arg);
+                calleeHeap.put("arg" + n++, v == null ? arg : v);
+            }
+        }
+        frames.push(new Frame(cursor, flow, heap, loops, returnVar));
+        cursor = callee.cursor();
+        flow = ControlFlow.of(callee);
+        heap = calleeHeap;
+        loops = new HashMap<>();
+    }
+
+    /**
+     * Helper method that returns from a subroutine to its caller.
+     */
+    private void ret() {
+        String result = heap.get("return");
+        Frame caller = frames.pop();
+        cursor = caller.cursor;
+        flow = caller.flow;
+        heap = caller.heap;
+        loops = caller.loops;
+        if(caller.returnVar != null && result != null)
+            heap.put(caller.returnVar, result);
+    }
+
+    /**
+     * Helper method that stops the run after an interrupt.
+     */
+    private void halt() {
+        cursor.seek(cursor.length());
+        frames.clear();
+        if(prefetcher != null) prefetcher.clear();
+        Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Helper method that abandons the current Instruction of the stream,
+     * along with any subroutines it called.
+     */
+    private void unwind() {
+        Frame top = frames.peekLast();
+        frames.clear();
+        if(top != null) {
+            cursor = top.cursor;
+            flow = top.flow;
+            heap = top.heap;
+            loops = top.loops;
+        }
+        cursor.seek(cursor.length());
+    }
+
+    /**
+     * Helper method that runs control-flow {@link Instruction}s until it
+     * reaches one to hand to an {@link InstructionHandler}.
+     * 
+     * @return The Instruction to hand over, or null if there isn't one yet
+     */
+    private Instruction advance() {
+        for(int i = 0; i < MAX_INLINE_STEPS; i++) {
+            if(!cursor.hasNext()) {
+                if(frames.isEmpty()) return null;
+                ret();
+                continue;
+            }
+            Instruction inst = cursor.next();
+            if(flow.execute(inst, cursor, heap, loops)) {
+                CONTROL.increment();
+                continue;
+            }
+            String callee = Instruction.calleeOf(inst);
+            if(callee == null) return inst;
+            CONTROL.increment();
+            call(callee, inst.getArgs());
+        }
+        return null;
+    }
+
+    /**
+     * Use start() to have this method called inside its own thread; runs the
+     * interpreter.
+     */
+    @Override
+    public void run() {
+        if(work == null) return;
+        synchronized(gate) {
+            try {
+                init();
+            } catch(IllegalArgumentException e) {
+                e.printStackTrace();
+                return;
+            }
+            if(restored != null) install(restored);
+            restored = null;
+        }
+        RUNNING.incrementAndGet();
+        try {
+            if(stream != null) runStream();
+            else runSequence();
+        } finally {
+            RUNNING.decrementAndGet();
+            synchronized(gate) {
+                idle = true;
+                gate.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Helper method that runs the fixed sequence.
+     */
+    private void runSequence() {
+        Future<?> f = null;
+
+        while(cursor.hasNext() || !frames.isEmpty()) {
+            if(f == null || f.isDone()) {
+                Instruction next;
+                try {
+                    awaitGo();
+                    next = advance();
+                } catch(InterruptedException e) {
+                    halt();
+                    continue;
+                } catch(RuntimeException e) {
+                    e.printStackTrace();
+                    break;
+                }
+                if(next != null) {
+                    f = submit(next);
+                    stepped();
+                    if(prefetcher != null)
+                        prefetcher.lookahead(next, cursor.copy(),
+                                lookahead);
+                }
+            }
+            try {
+                Interpreter.sleep(5);
+            } catch(InterruptedException e) {
+                halt();
+            }
+        }
+        if(f != null) {
+            try {
+                f.get();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch(ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Helper method that runs Instructions from the stream as they arrive,
+     * waiting for each command to finish before taking the next. The
+     * Interpreter counts as idle while it waits on the stream, and checks
+     * whether it has been paused again once an Instruction arrives. An
+     * Instruction taken but not yet run is held where checkpoint() and
+     * restore() can see it.
+     */
+    private void runStream() {
+        Future<?> f = null;
+        while(true) {
+            Instruction next;
+            try {
+                Future<?> last = f;
+                f = null;
+                if(last != null) last.get();
+                awaitGo();
+                if(!cursor.hasNext() && frames.isEmpty()) {
+                    Instruction in;
+                    synchronized(gate) {
+                        in = held.poll();
+                        if(in == null) {
+                            idle = true;
+                            gate.notifyAll();
+                        }
+                    }
+                    if(in == null) {
+                        in = stream.take();
+                        synchronized(gate) {
+                            if(in != null) held.add(in);
+                            else if(held.isEmpty()) break;
+                        }
+                        if(in != null && Metrics.isEnabled())
+                            STREAM_DEPTH.record(stream.size());
+                        continue;
+                    }
+                    InstructionSequence one = InstructionSequence.of(in);
+                    cursor = one.cursor();
+                    flow = new ControlFlow(one);
+                }
+                next = advance();
+            } catch(InterruptedException e) {
+                halt();
+                break;
+            } catch(ExecutionException e) {
+                e.getCause().printStackTrace();
+                continue;
+            } catch(RuntimeException e) {
+                e.printStackTrace();
+                unwind();
+                continue;
+            }
+            if(next != null) {
+                f = submit(next);
+                stepped();
+            }
+        }
+    }
+
+    /**
+     * Where a caller was when it called a subroutine.
+     */
+    static final class Frame {
+
+        final InstructionCursor cursor;
+        final ControlFlow flow;
+        final Map<String, String> heap;
+        final Map<Integer, Integer> loops;
+        final String returnVar;
+
+        Frame(InstructionCursor cursor, ControlFlow flow,
+                Map<String, String> heap, Map<Integer, Integer> loops,
+                String returnVar) {
+            this.cursor = cursor;
+            this.flow = flow;
+            this.heap = heap;
+            this.loops = loops;
+            this.returnVar = returnVar;
+        }
+    }
 }
\ No newline at end of file
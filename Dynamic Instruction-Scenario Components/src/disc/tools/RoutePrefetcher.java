@@ -0,0 +1,281 @@
+package disc.tools;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import disc.data.Instruction;
+import disc.data.Instruction.InstructionType;
+import disc.data.Waypoint;
+import disc.data.WaypointMap;
+
+/**
+ * Lookahead stage for the {@link Interpreter} that plans routes to upcoming
+ * navigation {@link Instruction}s on a background pool. While the current
+ * Instruction runs, the Interpreter hands the next few Instructions to
+ * lookahead(), which resolves the waypoint name of each navigation command
+ * (by default "nav.goto, waypointName") against the {@link WaypointMap} and
+ * submits a {@link RoutePlanner} call for it. When the navigation command is
+ * finally executed, the command target calls take() with the waypoint name
+ * and gets the finished plan straight away.
+ * <p>
+ * Plans are keyed by the names of both ends of the route. Each plan is made
+ * from the waypoint of the navigation command before it, starting from the
+ * navigation command being dispatched if there is one, or else the last
+ * waypoint that was taken. take() only uses a plan that starts where the
+ * robot actually is, so revisiting a waypoint never gets a plan made for a
+ * different route. Once a route is taken, pending plans that start at the
+ * same waypoint or end at the same one can no longer be used, and are
+ * cancelled.
+ * <p>
+ * take() counts a hit when a plan had been prefetched, and a miss when it had
+ * to plan in the calling thread instead.
+ *
+ * @author Liam Williams
+ * @version 0.1.2
+ * @param <T>
+ *            The type of plan made by the {@link RoutePlanner}
+ */
+public class RoutePrefetcher<T> {
+
+    protected WaypointMap map;
+    protected RoutePlanner<T> planner;
+    protected ExecutorService pool;
+    protected String target;
+    protected String method;
+
+    Map<Leg, Future<T>> pending = new ConcurrentHashMap<>();
+    volatile Waypoint current = null;
+    AtomicLong hits = new AtomicLong();
+    AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a {@link RoutePrefetcher} for "nav.goto, waypointName"
+     * Instructions, planning on a pool of two threads.
+     *
+     * @param map
+     *            The WaypointMap to resolve waypoint names against
+     * @param planner
+     *            The planner used to make each route
+     */
+    public RoutePrefetcher(WaypointMap map, RoutePlanner<T> planner) {
+        this(map, planner, Executors.newFixedThreadPool(2), "nav", "goto");
+    }
+
+    /**
+     * Creates a {@link RoutePrefetcher} for the given navigation command.
+     *
+     * @param map
+     *            The WaypointMap to resolve waypoint names against
+     * @param planner
+     *            The planner used to make each route
+     * @param pool
+     *            The pool to plan routes on
+     * @param target
+     *            The target of navigation Instructions (eg "nav")
+     * @param method
+     *            The method name of navigation Instructions (eg "goto")
+     */
+    public RoutePrefetcher(WaypointMap map, RoutePlanner<T> planner,
+            ExecutorService pool, String target, String method) {
+        this.map = map;
+        this.planner = planner;
+        this.pool = pool;
+        this.target = target;
+        this.method = method;
+    }
+
+    /**
+     * Submits plans for the navigation Instructions within the first "limit"
+     * upcoming {@link Instruction}s. Waypoints that already have a plan
+     * pending are skipped, as are names missing from the {@link WaypointMap}.
+     *
+     * @param upcoming
+     *            The Instructions after the one currently executing, in order
+     * @param limit
+     *            How many Instructions to look at
+     */
+    public void lookahead(Iterator<Instruction> upcoming, int limit) {
+        lookahead(null, upcoming, limit);
+    }
+
+    /**
+     * Submits plans for the navigation Instructions within the first "limit"
+     * upcoming {@link Instruction}s, starting from the waypoint of the
+     * Instruction being dispatched.
+     *
+     * @param dispatched
+     *            The Instruction just handed out, or null to start from the
+     *            last waypoint taken
+     * @param upcoming
+     *            The Instructions after it, in order
+     * @param limit
+     *            How many Instructions to look at
+     */
+    public void lookahead(Instruction dispatched,
+            Iterator<Instruction> upcoming, int limit) {
+        Waypoint from = current;
+        String name0 = getWaypointName(dispatched);
+        if(name0 != null && map.get(name0) != null) from = map.get(name0);
+        for(int i = 0; i < limit && upcoming.hasNext(); i++) {
+            String name = getWaypointName(upcoming.next());
+            if(name == null) continue;
+            Waypoint to = map.get(name);
+            if(to == null) continue;
+            Leg leg = new Leg(from, to);
+            if(!pending.containsKey(leg)) {
+                final Waypoint f = from;
+                pending.put(leg, pool.submit(() -> planner.plan(f, to)));
+            }
+            from = to;
+        }
+    }
+
+    /**
+     * Gets the plan to the named waypoint, waiting for it if it is still being
+     * made. Plans in the calling thread if nothing was prefetched, or the
+     * prefetched plan failed or was cancelled.
+     *
+     * @param waypointName
+     *            The name of the waypoint being navigated to
+     * @return The plan, or null if the waypoint doesn't exist
+     */
+    public T take(String waypointName) {
+        Waypoint to = map.get(waypointName);
+        if(to == null) return null;
+        Waypoint from = current;
+        current = to;
+        Leg leg = new Leg(from, to);
+        Future<T> f = pending.remove(leg);
+        evict(leg);
+        if(f != null) {
+            try {
+                T plan = f.get();
+                hits.incrementAndGet();
+                return plan;
+            } catch(ExecutionException e) {
+                e.printStackTrace();
+            } catch(CancellationException e) {
+                // Cancelled by clear() or another take(); plan it here.
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        misses.incrementAndGet();
+        return planner.plan(from, to);
+    }
+
+    /**
+     * Helper method that cancels the pending plans that start or end where
+     * the given route does, which can no longer be used.
+     */
+    private void evict(Leg taken) {
+        pending.entrySet().removeIf(e -> {
+            Leg l = e.getKey();
+            if(!Objects.equals(l.from, taken.from)
+                    && !Objects.equals(l.to, taken.to))
+                return false;
+            e.getValue().cancel(true);
+            return true;
+        });
+    }
+
+    /**
+     * Cancels every pending plan and forgets the last waypoint taken.
+     */
+    public void clear() {
+        for(Future<T> f : pending.values())
+            f.cancel(true);
+        pending.clear();
+        current = null;
+    }
+
+    /**
+     * Clears the pending plans and shuts the planning pool down.
+     */
+    public void shutdown() {
+        clear();
+        pool.shutdownNow();
+    }
+
+    /**
+     * @return The number of take() calls that found a prefetched plan
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of take() calls that had to plan in the calling
+     *         thread
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Helper method that reads the waypoint name out of a navigation
+     * {@link Instruction}.
+     *
+     * @return The waypoint name, or null if it isn't a navigation Instruction
+     */
+    private String getWaypointName(Instruction inst) {
+        if(inst == null || inst.getT() != InstructionType.COMMAND) return null;
+        String[] args = inst.getArgs();
+        if(args.length < 2 || !target.equals(inst.getTarget())
+                || !method.equals(args[0]))
+            return null;
+        return args[1];
+    }
+
+    /**
+     * Key for a pending plan: the names of the Waypoints at each end.
+     */
+    static final class Leg {
+
+        final String from;
+        final String to;
+
+        Leg(Waypoint from, Waypoint to) {
+            this.from = from == null ? null : from.getName();
+            this.to = to.getName();
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(from) * 31 + to.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Leg && Objects.equals(((Leg) o).from, from)
+                    && ((Leg) o).to.equals(to);
+        }
+    }
+
+    /**
+     * Makes a route between two {@link Waypoint}s. Called from the planning
+     * pool, so it must be safe to call from several threads at once.
+     *
+     * @param <T>
+     *            The type of plan made
+     */
+    public interface RoutePlanner<T> {
+
+        /**
+         * @param from
+         *            The Waypoint the route starts at, or null if unknown
+         * @param to
+         *            The Waypoint the route ends at
+         * @return The plan for the route
+         */
+        T plan(Waypoint from, Waypoint to);
+    }
+}
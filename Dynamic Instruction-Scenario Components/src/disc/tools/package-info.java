@@ -1,5 +1,5 @@
-/**
- * Reflection-based default implementation of a generic interpreter for DISC
- * Instructions.
- */
+/**
+ * Reflection-based default implementation of a generic interpreter for DISC
+ * Instructions.
+ */
 package disc.tools;
\ No newline at end of file
@@ -1,221 +1,340 @@
-package disc.util;
-
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Scanner;
-
-import disc.data.Scenario;
-import disc.data.Waypoint;
-import disc.data.WaypointMap;
-
-/**
- * Class for putting together an entire file with a WaypointMap, and chained
- * Scenario list. Works by using both the Scenario and WaypointMap parsers and
- * writers. <br>
- * <br>
- * Uses "#%" as a separator.
- * 
- * @author Liam Williams
- * @version 0.1.3
- */
-public class DISCBuilder {
-
-    WaypointMap map;
-    ScenarioCompressor scenarios = null;
-
-    /**
-     * Standard constructor for making an empty {@link DISCBuilder}.
-     */
-    public DISCBuilder() {
-        map = new WaypointMap();
-        scenarios = new ScenarioCompressor();
-    }
-
-    /**
-     * Constructor primarily for the clone() method.
-     * 
-     * @param map
-     *            a WaypointMap
-     * @param scenarios
-     *            a ScenarioCompressor
-     */
-    public DISCBuilder(WaypointMap map, ScenarioCompressor scenarios) {
-        this.map = map;
-        this.scenarios = scenarios;
-    }
-
-    /**
-     * @param map
-     *            a WaypointMap
-     * @param scenarios
-     *            an array of Scenarios
-     */
-    public DISCBuilder(WaypointMap map, Scenario[] scenarios) {
-        this.map = map;
-        this.scenarios = new ScenarioCompressor(
-                new ArrayList<Scenario>(Arrays.asList(scenarios)));
-    }
-
-    /**
-     * @param map
-     *            an array of Waypoints
-     * @param scenarios
-     *            a ScenarioCompressor
-     */
-    public DISCBuilder(Waypoint[] map, ScenarioCompressor scenarios) {
-        this.map = new WaypointMap();
-        for(Waypoint w : map)
-            this.map.addWaypoint(w);
-        this.scenarios = scenarios;
-    }
-
-    /**
-     * @param map
-     *            an array of Waypoints
-     * @param scenarios
-     *            an array of Scenarios
-     */
-    public DISCBuilder(Waypoint[] map, Scenario[] scenarios) {
-        this.map = new WaypointMap();
-        for(Waypoint w : map)
-            this.map.addWaypoint(w);
-        this.scenarios = new ScenarioCompressor(
-                new ArrayList<Scenario>(Arrays.asList(scenarios)));
-    }
-
-    /**
-     * Builds a DISCBuilder and immediately reads a file into internal data
-     * structures.
-     * 
-     * @param input
-     *            The file to be read
-     * @throws FileNotFoundException
-     *             If the file doesn't exist or can't be accessed
-     */
-    public DISCBuilder(File input) throws FileNotFoundException {
-        parse(new Scanner(input));
-    }
-
-    /**
-     * Builds a DISCBuilder and immediately reads a String into internal data
-     * structures.
-     * 
-     * @param input
-     *            The String to be read
-     */
-    public DISCBuilder(String input) {
-        parse(new Scanner(input));
-    }
-
-    /**
-     * Parses the data in the given Scanner into internal data structures.
-     * Clears internal data.
-     * 
-     * @param scn
-     *            A non-empty scanner created from a file or String
-     */
-    public void parse(Scanner scn) {
-        this.clearData();
-        boolean isMap = false;
-        StringBuilder sb = new StringBuilder("");
-        while(scn.hasNextLine()) {
-            String tmp = scn.nextLine().trim();
-            if(tmp.contains("#%") && !sb.toString().isEmpty()) {
-                if(isMap) {
-                    map = new WaypointMap(sb.toString());
-                    isMap = false;
-                } else {
-                    scenarios = new ScenarioCompressor(sb.toString());
-                }
-                sb = new StringBuilder("");
-            } else if(tmp.contains("#%") && sb.toString().isEmpty()) {
-                isMap = true;
-            } else if(tmp.isEmpty()) ;
-            else sb.append(tmp + "\r\n");
-        }
-        scn.close();
-    }
-
-    /**
-     * Empties the internal data structures of all information.
-     */
-    public void clearData() {
-        map = new WaypointMap();
-        if(scenarios == null) scenarios = new ScenarioCompressor();
-        else scenarios.clearScenarioList();
-    }
-
-    /**
-     * Writes the internal data to a file. Overwrites existing data.
-     * 
-     * @param output
-     *            The file to be written to/created
-     * @throws FileNotFoundException
-     */
-    public void write(File output) throws FileNotFoundException {
-        PrintWriter op = new PrintWriter(output);
-        op.write(this.toString());
-        op.close();
-    }
-
-    /**
-     * Sets the internal WaypointMap.
-     * 
-     * @param map
-     *            a WaypointMap
-     */
-    public void setMap(WaypointMap map) {
-        this.map = map;
-    }
-
-    /**
-     * @return The internally stored WaypointMap
-     */
-    public WaypointMap getMap() {
-        return this.map;
-    }
-
-    /**
-     * Sets the internal ScenarioCompressor.
-     * 
-     * @param scenarios
-     *            a ScenarioCompressor
-     */
-    public void setScenarios(ScenarioCompressor scenarios) {
-        this.scenarios = scenarios;
-    }
-
-    /**
-     * @return The internally stored ScenarioCompressor
-     */
-    public ScenarioCompressor getScenarios() {
-        return this.scenarios;
-    }
-
-    /**
-     * @return The internally stored data as would be written to a file
-     */
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder("");
-        sb.append("#% BEGIN WAYPOINTMAP\r\n");
-        sb.append(map.toString() + "\r\n");
-        sb.append("#% BEGIN SCENARIO LIST\r\n");
-        sb.append(scenarios.toString() + "\r\n");
-        sb.append("#% END FILE");
-        return sb.toString();
-    }
-
-    @Override
-    public int hashCode() {
-        return (int) Math.sqrt(map.hashCode() + scenarios.hashCode());
-    }
-
-    @Override
-    public DISCBuilder clone() {
-        return new DISCBuilder(map, scenarios);
-    }
-}
+package disc.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Scanner;
+
+import disc.data.Scenario;
+import disc.data.Waypoint;
+import disc.data.WaypointMap;
+import disc.data.ZoneMap;
+
+/**
+ * Class for putting together an entire file with a WaypointMap, and chained
+ * Scenario list, and optionally a ZoneMap. Works by using the Scenario,
+ * WaypointMap, and ZoneMap parsers and writers. <br>
+ * <br>
+ * Uses "#%" as a separator. Each section is recognised by the text of its
+ * separator line ("#% BEGIN WAYPOINTMAP", "#% BEGIN ZONES", or "#% BEGIN
+ * SCENARIO LIST"). If the text isn't recognised, the first section is taken as
+ * the WaypointMap and any after it as the Scenario list. The ZoneMap section
+ * is only written if there are Zones.
+ * 
+ * @author Liam Williams
+ * @version 0.1.8
+ */
+public class DISCBuilder {
+
+    WaypointMap map;
+    ScenarioCompressor scenarios = null;
+    ZoneMap zones = new ZoneMap();
+
+    /**
+     * Standard constructor for making an empty {@link DISCBuilder}.
+     */
+    public DISCBuilder() {
+        map = new WaypointMap();
+        scenarios = new ScenarioCompressor();
+    }
+
+    /**
+     * Constructor primarily for the clone() method.
+     * 
+     * @param map
+     *            a WaypointMap
+     * @param scenarios
+     *            a ScenarioCompressor
+     */
+    public DISCBuilder(WaypointMap map, ScenarioCompressor scenarios) {
+        this.map = map;
+        this.scenarios = scenarios;
+    }
+
+    /**
+     * @param map
+     *            a WaypointMap
+     * @param scenarios
+     *            an array of Scenarios
+     */
+    public DISCBuilder(WaypointMap map, Scenario[] scenarios) {
+        this.map = map;
+        this.scenarios = new ScenarioCompressor(
+                new ArrayList<Scenario>(Arrays.asList(scenarios)));
+    }
+
+    /**
+     * @param map
+     *            an array of Waypoints
+     * @param scenarios
+     *            a ScenarioCompressor
+     */
+    public DISCBuilder(Waypoint[] map, ScenarioCompressor scenarios) {
+        this.map = new WaypointMap();
+        for(Waypoint w : map)
+            this.map.addWaypoint(w);
+        this.scenarios = scenarios;
+    }
+
+    /**
+     * @param map
+     *            an array of Waypoints
+     * @param scenarios
+     *            an array of Scenarios
+     */
+    public DISCBuilder(Waypoint[] map, Scenario[] scenarios) {
+        this.map = new WaypointMap();
+        for(Waypoint w : map)
+            this.map.addWaypoint(w);
+        this.scenarios = new ScenarioCompressor(
+                new ArrayList<Scenario>(Arrays.asList(scenarios)));
+    }
+
+    /**
+     * Builds a DISCBuilder and immediately reads a file into internal data
+     * structures.
+     * 
+     * @param input
+     *            The file to be read
+     * @throws FileNotFoundException
+     *             If the file doesn't exist or can't be accessed
+     */
+    public DISCBuilder(File input) throws FileNotFoundException {
+        parse(new Scanner(input));
+    }
+
+    /**
+     * Builds a DISCBuilder and immediately reads a String into internal data
+     * structures.
+     * 
+     * @param input
+     *            The String to be read
+     */
+    public DISCBuilder(String input) {
+        parse(new Scanner(input));
+    }
+
+    /**
+     * Parses the data in the given Scanner into internal data structures.
+     * Clears internal data.
+     * 
+     * @param scn
+     *            A non-empty scanner created from a file or String
+     */
+    public void parse(Scanner scn) {
+        this.clearData();
+        String section = null;
+        boolean first = true;
+        while(scn.hasNextLine()) {
+            String tmp = scn.nextLine().trim();
+            if(tmp.contains("#%")) {
+                endSection(section);
+                section = sectionOf(tmp, first);
+                first = false;
+                beginSection(section);
+            } else if(tmp.isEmpty() || section == null) ;
+            else if(section.equals("WAYPOINTMAP")) map.parseLine(tmp);
+            else if(section.equals("ZONES")) zones.parseLine(tmp);
+            else if(section.equals("SCENARIO LIST"))
+                scenarios.decompressLine(tmp);
+        }
+        endSection(section);
+        scn.close();
+    }
+
+    /**
+     * Helper method that works out which section a "#%" line begins.
+     * 
+     * @return "WAYPOINTMAP", "ZONES", "SCENARIO LIST", or "END"
+     */
+    static String sectionOf(String separator, boolean first) {
+        if(separator.contains("WAYPOINTMAP")) return "WAYPOINTMAP";
+        else if(separator.contains("ZONES")) return "ZONES";
+        else if(separator.contains("SCENARIO")) return "SCENARIO LIST";
+        else if(separator.contains("END")) return "END";
+        else return first ? "WAYPOINTMAP" : "SCENARIO LIST";
+    }
+
+    /**
+     * Helper method that starts a fresh data structure for the lines of a
+     * section to be read into.
+     */
+    private void beginSection(String section) {
+        if(section.equals("WAYPOINTMAP")) map = new WaypointMap();
+        else if(section.equals("ZONES")) zones = new ZoneMap();
+        else if(section.equals("SCENARIO LIST"))
+            scenarios = new ScenarioCompressor();
+    }
+
+    /**
+     * Helper method that finishes off the section being read, if any.
+     */
+    private void endSection(String section) {
+        if("SCENARIO LIST".equals(section)) scenarios.endDecompress();
+    }
+
+    /**
+     * Empties the internal data structures of all information.
+     */
+    public void clearData() {
+        map = new WaypointMap();
+        zones = new ZoneMap();
+        if(scenarios == null) scenarios = new ScenarioCompressor();
+        else scenarios.clearScenarioList();
+    }
+
+    /**
+     * Writes the internal data to a file. Overwrites existing data.
+     * 
+     * @param output
+     *            The file to be written to/created
+     * @throws FileNotFoundException
+     *             If the file cannot be created or accessed
+     * @throws IOException
+     *             If writing the file fails part way
+     */
+    public void write(File output) throws IOException {
+        PrintWriter op = new PrintWriter(output);
+        try {
+            writeTo(op);
+        } finally {
+            op.close();
+        }
+        if(op.checkError())
+            throw new IOException("Could not write " + output.getPath());
+    }
+
+    /**
+     * Sets the internal WaypointMap.
+     * 
+     * @param map
+     *            a WaypointMap
+     */
+    public void setMap(WaypointMap map) {
+        this.map = map;
+    }
+
+    /**
+     * @return The internally stored WaypointMap
+     */
+    public WaypointMap getMap() {
+        return this.map;
+    }
+
+    /**
+     * Sets the internal ZoneMap.
+     * 
+     * @param zones
+     *            a ZoneMap
+     */
+    public void setZones(ZoneMap zones) {
+        this.zones = zones;
+    }
+
+    /**
+     * @return The internally stored ZoneMap
+     */
+    public ZoneMap getZones() {
+        return this.zones;
+    }
+
+    /**
+     * Sets the internal ScenarioCompressor.
+     * 
+     * @param scenarios
+     *            a ScenarioCompressor
+     */
+    public void setScenarios(ScenarioCompressor scenarios) {
+        this.scenarios = scenarios;
+    }
+
+    /**
+     * @return The internally stored ScenarioCompressor
+     */
+    public ScenarioCompressor getScenarios() {
+        return this.scenarios;
+    }
+
+    /**
+     * @return The internally stored data as would be written to a file
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("");
+        try {
+            writeTo(sb);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends the internally stored data as would be written to a file,
+     * streaming each section straight from its data structure so that only a
+     * line or so is ever held in memory at once.
+     * 
+     * @param out
+     *            The Appendable to write to
+     * @throws IOException
+     *             If the Appendable cannot be written to
+     */
+    public void writeTo(Appendable out) throws IOException {
+        out.append("#% BEGIN WAYPOINTMAP\r\n");
+        map.writeTo(out);
+        out.append("\r\n");
+        if(!zones.isEmpty()) {
+            out.append("#% BEGIN ZONES\r\n");
+            zones.writeTo(out);
+            out.append("\r\n");
+        }
+        out.append("#% BEGIN SCENARIO LIST\r\n");
+        scenarios.writeTo(out);
+        out.append("\r\n");
+        out.append("#% END FILE");
+    }
+
+    /**
+     * Streams the same text as toString() to the given channel. Does not
+     * close the channel.
+     * 
+     * @param out
+     *            The channel to write to
+     * @throws IOException
+     *             If the channel cannot be written to
+     * @see TextChannels
+     */
+    public void writeTo(WritableByteChannel out) throws IOException {
+        TextChannels.writeTo(this::writeTo, out);
+    }
+
+    /**
+     * Returns a 64-bit fingerprint of the {@link WaypointMap}, the
+     * {@link ScenarioCompressor}, and the {@link ZoneMap}.
+     * 
+     * @return the fingerprint of the DISC data
+     */
+    public long fingerprint() {
+        return new Fingerprint().add(map.fingerprint())
+                                .add(scenarios.fingerprint())
+                                .add(zones.fingerprint())
+                                .get();
+    }
+
+    @Override
+    public int hashCode() {
+        return Fingerprint.fold(fingerprint());
+    }
+
+    @Override
+    public DISCBuilder clone() {
+        DISCBuilder c = new DISCBuilder(map, scenarios);
+        c.setZones(zones);
+        return c;
+    }
+}
@@ -0,0 +1,420 @@
+package disc.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import disc.data.Scenario;
+import disc.data.Waypoint;
+import disc.data.WaypointMap;
+import disc.data.Zone;
+
+/**
+ * Incremental persistence for a DISC file. Instead of rewriting the whole file
+ * on every change, each edit is appended to a journal file next to it (the
+ * DISC file's name with ".journal" on the end), so saving costs about as much
+ * as the change itself. Opening a DISCJournal loads the DISC file and replays
+ * the journal on top of it.
+ * <p>
+ * compact() merges the journal into a fresh DISC file, written to a temporary
+ * file and then moved over the old one, and drops the merged records from the
+ * journal. It can run in the background while edits carry on, and starts on
+ * its own once the journal passes the compaction threshold.
+ * <p>
+ * Each record is a header line, "@op length crc", followed by the text of the
+ * Waypoint, Scenario, Zone, or name it applies to. The base file is never
+ * written in place, and a record that was only partly written when a crash
+ * happened fails its checksum and is dropped on the next load, along with
+ * anything after it. Every edit replaces or removes by name, so replaying a
+ * record that already made it into the base file does no harm.
+ * <p>
+ * If a record can't be written, it is cut off the journal again before the
+ * edit fails, so later edits aren't stranded behind it. If even that fails,
+ * every later edit is refused, since it could be lost on the next load.
+ * <p>
+ * Edits made through the DISCJournal replace Scenarios by name, unlike
+ * ScenarioCompressor.addScenario(). The DISCBuilder from getBuilder() should
+ * only be read; changes made to it directly are not journaled.
+ *
+ * @author Liam Williams
+ * @version 0.1.2
+ */
+public class DISCJournal implements Closeable {
+
+    File base;
+    Path journalPath;
+    FileChannel journal;
+    DISCBuilder data;
+    long compactionThreshold = 8 * 1024 * 1024;
+    ExecutorService compactor = null;
+    Future<?> pendingCompaction = null;
+    final Object compactLock = new Object();
+    IOException failure = null;
+
+    /**
+     * Opens the given DISC file and its journal, replaying the journal on top
+     * of it. Either file may be missing, in which case it starts out empty.
+     *
+     * @param bundle
+     *            The DISC file
+     * @throws IOException
+     *             If either file cannot be read, or the journal cannot be
+     *             opened for writing
+     */
+    public DISCJournal(File bundle) throws IOException {
+        this.base = bundle;
+        this.journalPath = new File(bundle.getPath() + ".journal").toPath();
+        this.data = bundle.exists() ? DISCLoader.load(bundle)
+                : new DISCBuilder();
+        this.journal = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long good = replay();
+        if(good < journal.size()) journal.truncate(good);
+    }
+
+    /**
+     * @return The DISCBuilder holding the current data, for reading
+     */
+    public synchronized DISCBuilder getBuilder() {
+        return data;
+    }
+
+    /**
+     * Adds or replaces a {@link Waypoint} and journals the change.
+     *
+     * @param toAdd
+     *            The Waypoint to add
+     * @throws IOException
+     *             If the journal cannot be written to
+     */
+    public synchronized void addWaypoint(Waypoint toAdd) throws IOException {
+        append("W+", toAdd.toString());
+        data.getMap().addWaypoint(toAdd);
+    }
+
+    /**
+     * Removes a {@link Waypoint} and journals the change.
+     *
+     * @param waypointName
+     *            The name of the Waypoint to remove
+     * @throws IOException
+     *             If the journal cannot be written to
+     */
+    public synchronized void removeWaypoint(String waypointName)
+            throws IOException {
+        append("W-", waypointName);
+        data.getMap().removeWaypoint(waypointName);
+    }
+
+    /**
+     * Adds a {@link Scenario}, or replaces the one with the same name, and
+     * journals the change.
+     *
+     * @param toAdd
+     *            The Scenario to add
+     * @throws IOException
+     *             If the journal cannot be written to
+     */
+    public synchronized void addScenario(Scenario toAdd) throws IOException {
+        append("S+", toAdd.toString());
+        data.getScenarios().replaceScenario(toAdd);
+    }
+
+    /**
+     * Removes the {@link Scenario} with the given name and journals the
+     * change.
+     *
+     * @param name
+     *            The name of the Scenario to remove
+     * @throws IOException
+     *             If the journal cannot be written to
+     */
+    public synchronized void removeScenario(String name) throws IOException {
+        append("S-", name);
+        data.getScenarios().removeScenario(name);
+    }
+
+    /**
+     * Adds or replaces a {@link Zone} and journals the change.
+     *
+     * @param toAdd
+     *            The Zone to add
+     * @throws IOException
+     *             If the journal cannot be written to
+     */
+    public synchronized void addZone(Zone toAdd) throws IOException {
+        append("Z+", toAdd.toString());
+        data.getZones().addZone(toAdd);
+    }
+
+    /**
+     * Removes a {@link Zone} and journals the change.
+     *
+     * @param zoneName
+     *            The name of the Zone to remove
+     * @throws IOException
+     *             If the journal cannot be written to
+     */
+    public synchronized void removeZone(String zoneName) throws IOException {
+        append("Z-", zoneName);
+        data.getZones().removeZone(zoneName);
+    }
+
+    /**
+     * @return The size of the journal in bytes
+     * @throws IOException
+     *             If the journal cannot be read
+     */
+    public synchronized long getJournalSize() throws IOException {
+        return journal.size();
+    }
+
+    /**
+     * Sets how big the journal can get before a background compaction is
+     * started.
+     *
+     * @param bytes
+     *            The size in bytes, or 0 to never compact automatically
+     */
+    public synchronized void setCompactionThreshold(long bytes) {
+        this.compactionThreshold = bytes;
+    }
+
+    /**
+     * Merges the journal into a fresh DISC file. Edits can carry on while the
+     * file is written; only the ones journaled before it started are merged.
+     *
+     * @throws IOException
+     *             If either file cannot be written
+     */
+    public void compact() throws IOException {
+        synchronized(compactLock) {
+            DISCBuilder snapshot;
+            long merged;
+            synchronized(this) {
+                merged = journal.size();
+                if(merged == 0) return;
+                snapshot = new DISCBuilder(data.getMap().clone(),
+                        new ScenarioCompressor(new ArrayList<Scenario>(
+                                Arrays.asList(data.getScenarios()
+                                        .getScenarios()))));
+                snapshot.setZones(data.getZones().clone());
+            }
+
+            Path target = base.toPath();
+            Path tmp = new File(base.getPath() + ".tmp").toPath();
+            try(FileChannel out = FileChannel.open(tmp,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                snapshot.writeTo(out);
+                out.force(true);
+            }
+            move(tmp, target);
+            syncDirectory(target);
+
+            synchronized(this) {
+                Path jtmp = new File(journalPath + ".tmp").toPath();
+                try(FileChannel out = FileChannel.open(jtmp,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE)) {
+                    long at = merged, size = journal.size();
+                    while(at < size)
+                        at += journal.transferTo(at, size - at, out);
+                    out.force(true);
+                }
+                journal.close();
+                try {
+                    move(jtmp, journalPath);
+                } finally {
+                    journal = FileChannel.open(journalPath,
+                            StandardOpenOption.READ, StandardOpenOption.WRITE);
+                }
+                syncDirectory(journalPath);
+            }
+        }
+    }
+
+    /**
+     * Starts compact() on a background thread, unless one is already running.
+     *
+     * @return The Future of the compaction
+     */
+    public synchronized Future<?> compactInBackground() {
+        if(pendingCompaction != null && !pendingCompaction.isDone())
+            return pendingCompaction;
+        if(compactor == null) compactor = Executors.newSingleThreadExecutor(
+                r -> {
+                    Thread t = new Thread(r, "DISCJournal compactor");
+                    t.setDaemon(true);
+                    return t;
+                });
+        pendingCompaction = compactor.submit(() -> {
+            compact();
+            return null;
+        });
+        return pendingCompaction;
+    }
+
+    /**
+     * Waits for any background compaction and closes the journal. Does not
+     * compact.
+     */
+    @Override
+    public void close() throws IOException {
+        Future<?> f;
+        synchronized(this) {
+            f = pendingCompaction;
+        }
+        if(f != null) {
+            try {
+                f.get();
+            } catch(Exception e) {
+                e.printStackTrace();
+            }
+        }
+        synchronized(this) {
+            if(compactor != null) compactor.shutdown();
+            journal.close();
+        }
+    }
+
+    /**
+     * Helper method that appends a record to the journal and forces it to
+     * disk, starting a background compaction if the journal is too big. A
+     * record that fails part way is cut off again.
+     */
+    private void append(String op, String payload) throws IOException {
+        byte[] body = payload.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        byte[] head = ("@" + op + " " + body.length + " "
+                + Long.toHexString(crc.getValue()) + "\r\n")
+                        .getBytes(StandardCharsets.UTF_8);
+        ByteBuffer b = ByteBuffer.allocate(head.length + body.length + 2);
+        b.put(head).put(body).put((byte) '\r').put((byte) '\n').flip();
+        if(failure != null) throw new IOException(
+                "Journal could not be repaired after a failed write.", failure);
+        long start = journal.size(), at = start;
+        try {
+            while(b.hasRemaining())
+                at += journal.write(b, at);
+            journal.force(false);
+        } catch(IOException e) {
+            try {
+                journal.truncate(start);
+                journal.force(false);
+            } catch(IOException t) {
+                e.addSuppressed(t);
+                failure = e;
+            }
+            throw e;
+        }
+        if(compactionThreshold > 0 && at > compactionThreshold)
+            compactInBackground();
+    }
+
+    /**
+     * Helper method that applies every intact record in the journal.
+     *
+     * @return The offset just past the last intact record
+     */
+    private long replay() throws IOException {
+        long size = journal.size();
+        if(size == 0) return 0;
+        ByteBuffer b = ByteBuffer.allocate((int) Math.min(size,
+                Integer.MAX_VALUE));
+        while(b.hasRemaining() && journal.read(b, b.position()) > 0);
+        b.flip();
+        byte[] all = new byte[b.remaining()];
+        b.get(all);
+        int at = 0;
+        while(at < all.length) {
+            int eol = at;
+            while(eol < all.length && all[eol] != '\n')
+                eol++;
+            if(eol >= all.length) break;
+            String[] head = new String(all, at, eol - at,
+                    StandardCharsets.UTF_8).trim().split(" ");
+            if(head.length != 3 || !head[0].startsWith("@")) break;
+            int length;
+            long expected;
+            try {
+                length = Integer.parseInt(head[1]);
+                expected = Long.parseLong(head[2], 16);
+            } catch(NumberFormatException e) {
+                break;
+            }
+            int start = eol + 1;
+            if(length < 0 || start + length + 2 > all.length) break;
+            CRC32 crc = new CRC32();
+            crc.update(all, start, length);
+            if(crc.getValue() != expected) break;
+            apply(head[0].substring(1), new String(all, start, length,
+                    StandardCharsets.UTF_8));
+            at = start + length + 2;
+        }
+        return at;
+    }
+
+    /**
+     * Helper method that applies a single record to the in-memory data.
+     */
+    private void apply(String op, String payload) {
+        WaypointMap map = data.getMap();
+        try {
+            if(op.equals("W+")) map.addWaypoint(new Waypoint(payload));
+            else if(op.equals("W-")) map.removeWaypoint(payload);
+            else if(op.equals("S+"))
+                data.getScenarios().replaceScenario(new Scenario(payload));
+            else if(op.equals("S-")) data.getScenarios().removeScenario(payload);
+            else if(op.equals("Z+")) data.getZones().addZone(new Zone(payload));
+            else if(op.equals("Z-")) data.getZones().removeZone(payload);
+        } catch(WaypointException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Helper method that moves a file over another, atomically if the file
+     * system can.
+     */
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Helper method that forces the directory holding a file to disk, so a
+     * rename into it survives a crash. Some platforms cannot open a directory
+     * this way; there the rename is left to the file system.
+     */
+    private static void syncDirectory(Path file) {
+        Path dir = file.toAbsolutePath().getParent();
+        if(dir == null) return;
+        try(FileChannel d = FileChannel.open(dir, StandardOpenOption.READ)) {
+            d.force(true);
+        } catch(IOException e) {
+            // Not supported here, e.g. on Windows.
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package disc.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import disc.data.WaypointMap;
+import disc.data.ZoneMap;
+import disc.metrics.Histogram;
+import disc.metrics.Metrics;
+
+/**
+ * Loads a DISC file written by {@link DISCBuilder}, parsing its sections at
+ * the same time on separate threads. The file is memory-mapped and scanned
+ * once for its "#%" separator lines, then the WaypointMap, ZoneMap, and
+ * Scenario list sections are each decoded and parsed by their own task, so
+ * loading takes about as long as the largest section rather than all of them
+ * added together.
+ * <p>
+ * Follows the same rules as DISCBuilder.parse(), and gives the same result.
+ * Files too big to map in one piece are read by DISCBuilder instead.
+ *
+ * @author Liam Williams
+ * @version 0.1.2
+ */
+public class DISCLoader {
+
+    static final Histogram LOAD = Metrics.histogram("disc.load");
+    static final Histogram WAYPOINTS = Metrics
+            .histogram("disc.load.waypoints");
+    static final Histogram SCENARIOS = Metrics
+            .histogram("disc.load.scenarios");
+
+    /**
+     * Loads the given DISC file, parsing its sections on the common
+     * ForkJoinPool.
+     *
+     * @param input
+     *            The file to be read
+     * @return A DISCBuilder holding the file's data
+     * @throws IOException
+     *             If the file doesn't exist or can't be read
+     */
+    public static DISCBuilder load(File input) throws IOException {
+        return load(input, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Loads the given DISC file, parsing its sections on the given Executor.
+     *
+     * @param input
+     *            The file to be read
+     * @param pool
+     *            The Executor to parse sections on
+     * @return A DISCBuilder holding the file's data
+     * @throws IOException
+     *             If the file doesn't exist or can't be read
+     */
+    public static DISCBuilder load(File input, Executor pool)
+            throws IOException {
+        long start = Metrics.start();
+        MappedByteBuffer buf;
+        try(RandomAccessFile raf = new RandomAccessFile(input, "r")) {
+            FileChannel ch = raf.getChannel();
+            if(ch.size() > Integer.MAX_VALUE) return new DISCBuilder(input);
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+
+        CompletableFuture<WaypointMap> map = CompletableFuture
+                .completedFuture(new WaypointMap());
+        CompletableFuture<ZoneMap> zones = CompletableFuture
+                .completedFuture(new ZoneMap());
+        CompletableFuture<ScenarioCompressor> scenarios = CompletableFuture
+                .completedFuture(new ScenarioCompressor());
+        for(Section s : findSections(buf)) {
+            final ByteBuffer slice = s.slice(buf);
+            if(s.name.equals("WAYPOINTMAP")) {
+                map = CompletableFuture.supplyAsync(() -> {
+                    long t = Metrics.start();
+                    WaypointMap m = new WaypointMap();
+                    forEachLine(slice, m::parseLine);
+                    WAYPOINTS.recordSince(t);
+                    return m;
+                }, pool);
+            } else if(s.name.equals("ZONES")) {
+                zones = CompletableFuture.supplyAsync(() -> {
+                    ZoneMap z = new ZoneMap();
+                    forEachLine(slice, z::parseLine);
+                    return z;
+                }, pool);
+            } else if(s.name.equals("SCENARIO LIST")) {
+                scenarios = CompletableFuture.supplyAsync(() -> {
+                    long t = Metrics.start();
+                    ScenarioCompressor sc = new ScenarioCompressor();
+                    forEachLine(slice, sc::decompressLine);
+                    sc.endDecompress();
+                    SCENARIOS.recordSince(t);
+                    return sc;
+                }, pool);
+            }
+        }
+
+        try {
+            DISCBuilder b = new DISCBuilder(map.get(), scenarios.get());
+            b.setZones(zones.get());
+            LOAD.recordSince(start);
+            return b;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted loading " + input);
+        } catch(ExecutionException e) {
+            throw new IOException("Could not load " + input, e.getCause());
+        }
+    }
+
+    /**
+     * Helper method that scans the file for "#%" separator lines and works
+     * out where each section's lines start and end.
+     */
+    private static ArrayList<Section> findSections(ByteBuffer buf) {
+        ArrayList<Section> sections = new ArrayList<>();
+        Section current = null;
+        boolean first = true;
+        int lineStart = 0;
+        int limit = buf.limit();
+        for(int i = 0; i <= limit; i++) {
+            if(i < limit && buf.get(i) != '\n' && buf.get(i) != '\r') continue;
+            if(isSeparator(buf, lineStart, i)) {
+                if(current != null) {
+                    current.end = lineStart;
+                    sections.add(current);
+                }
+                String header = decode(buf, lineStart, i).toString();
+                current = new Section(DISCBuilder.sectionOf(header, first), i);
+                first = false;
+            }
+            lineStart = i + 1;
+        }
+        if(current != null) {
+            current.end = limit;
+            sections.add(current);
+        }
+        return sections;
+    }
+
+    /**
+     * Helper method that checks whether a line contains "#%".
+     */
+    private static boolean isSeparator(ByteBuffer buf, int start, int end) {
+        for(int i = start; i < end - 1; i++)
+            if(buf.get(i) == '#' && buf.get(i + 1) == '%') return true;
+        return false;
+    }
+
+    /**
+     * Helper method that decodes part of the file with the platform charset,
+     * as a Scanner over the file would.
+     */
+    private static CharBuffer decode(ByteBuffer buf, int start, int end) {
+        ByteBuffer b = buf.duplicate();
+        b.limit(end).position(start);
+        return Charset.defaultCharset().decode(b);
+    }
+
+    /**
+     * Helper method that decodes a section and hands each of its lines to the
+     * given consumer.
+     */
+    private static void forEachLine(ByteBuffer slice, Consumer<String> c) {
+        CharBuffer cb = decode(slice, 0, slice.limit());
+        int start = 0;
+        int limit = cb.limit();
+        for(int i = 0; i < limit; i++) {
+            char ch = cb.get(i);
+            if(ch == '\n' || ch == '\r') {
+                if(i > start) c.accept(cb.subSequence(start, i).toString());
+                start = i + 1;
+            }
+        }
+        if(start < limit) c.accept(cb.subSequence(start, limit).toString());
+    }
+
+    /**
+     * The name and byte range of one section of a DISC file.
+     */
+    static class Section {
+
+        String name;
+        int start;
+        int end;
+
+        Section(String name, int start) {
+            this.name = name;
+            this.start = start;
+        }
+
+        ByteBuffer slice(ByteBuffer buf) {
+            ByteBuffer b = buf.duplicate();
+            b.limit(end).position(start);
+            return b.slice();
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package disc.util;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleUnaryOperator;
+
+import disc.data.Scenario;
+import disc.data.ScenarioParser;
+import disc.data.Waypoint;
+import disc.data.WaypointMap;
+
+/**
+ * Keeps the {@link Scenario}s and {@link Waypoint}s in a directory loaded,
+ * reloading them as the files change. .scenario files hold one Scenario each,
+ * .scenariox files hold a ScenarioCompressor chain, and .waypoint files are
+ * merged into a single {@link WaypointMap}. The merged map is in the units of
+ * the first .waypoint file by name; the angles of Waypoints from a file in
+ * the other unit are converted.
+ * <p>
+ * A WatchService thread picks up changed files and only reparses the parts of
+ * them that changed: each Scenario and each Waypoint line is fingerprinted,
+ * and ones with a fingerprint seen in the last version of the file are reused
+ * as they are. The new ScenarioCompressor and WaypointMap are then built and
+ * swapped in together, so a reader never sees half of a reload.
+ * <p>
+ * Nothing that has been handed out is ever changed. An
+ * {@link disc.tools.Interpreter} that is running a Scenario keeps running the
+ * version it was given, and the next one started picks up whatever is
+ * current. The ScenarioCompressor and WaypointMap from getScenarios() and
+ * getMap() should only be read.
+ *
+ * @author Liam Williams
+ * @version 0.1.3
+ */
+public class DISCReloader implements Closeable {
+
+    Path directory;
+    WatchService watcher;
+    Thread thread;
+    volatile Loaded current;
+    Map<Path, Source> sources = new TreeMap<>();
+    CopyOnWriteArrayList<Runnable> listeners = new CopyOnWriteArrayList<>();
+    long settle = 50;
+
+    /**
+     * Loads every .scenario, .scenariox, and .waypoint file in the given
+     * directory and starts watching it.
+     *
+     * @param directory
+     *            The directory to watch
+     * @throws IOException
+     *             If the directory cannot be read or watched
+     */
+    public DISCReloader(Path directory) throws IOException {
+        this.directory = directory;
+        this.watcher = directory.getFileSystem().newWatchService();
+        directory.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        reload();
+        thread = new Thread(this::watch, "DISCReloader " + directory);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return The current Scenarios, for reading
+     */
+    public ScenarioCompressor getScenarios() {
+        return current.scenarios;
+    }
+
+    /**
+     * @return The current Waypoints, for reading
+     */
+    public WaypointMap getMap() {
+        return current.map;
+    }
+
+    /**
+     * Searches the current Scenarios for the first match by name.
+     *
+     * @param name
+     *            The name to match with a Scenario
+     * @return The found Scenario, or null if it wasn't found
+     */
+    public Scenario getScenarioByName(String name) {
+        return current.scenarios.getScenarioByName(name);
+    }
+
+    /**
+     * @return How many times the Scenarios and Waypoints have been swapped,
+     *         starting at 1 for the first load
+     */
+    public long getVersion() {
+        return current.version;
+    }
+
+    /**
+     * Adds a Runnable to be run on the watching thread after every swap.
+     *
+     * @param r
+     *            The Runnable to run
+     */
+    public void addListener(Runnable r) {
+        listeners.add(r);
+    }
+
+    /**
+     * Removes a Runnable added by addListener().
+     *
+     * @param r
+     *            The Runnable to remove
+     */
+    public void removeListener(Runnable r) {
+        listeners.remove(r);
+    }
+
+    /**
+     * Sets how long the watching thread waits for a burst of changes to finish
+     * before reloading, so that a file being saved in pieces is read once.
+     *
+     * @param millis
+     *            The time to wait in milliseconds
+     */
+    public void setSettleTime(long millis) {
+        this.settle = millis;
+    }
+
+    /**
+     * Checks every file in the directory, reparsing any that changed and
+     * swapping in the result. Called by the watching thread, but can also be
+     * called to force a check.
+     *
+     * @throws IOException
+     *             If the directory cannot be read
+     */
+    public synchronized void reload() throws IOException {
+        boolean changed = false;
+        ArrayList<Path> seen = new ArrayList<>();
+        try(DirectoryStream<Path> ds = Files.newDirectoryStream(directory)) {
+            for(Path p : ds) {
+                if(kindOf(p) == null) continue;
+                seen.add(p);
+                changed |= refresh(p);
+            }
+        }
+        changed |= sources.keySet().retainAll(seen);
+        if(changed || current == null) swap();
+    }
+
+    /**
+     * Stops watching the directory.
+     */
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+        thread.interrupt();
+    }
+
+    /**
+     * Helper method run by the watching thread. Waits for events, lets a burst
+     * of them settle, then reloads only the files they named.
+     */
+    private void watch() {
+        try {
+            while(true) {
+                WatchKey key = watcher.take();
+                ArrayList<Path> changed = new ArrayList<>();
+                boolean overflow = false;
+                while(key != null) {
+                    for(WatchEvent<?> e : key.pollEvents()) {
+                        if(e.kind() == OVERFLOW) overflow = true;
+                        else changed.add(directory.resolve((Path) e.context()));
+                    }
+                    key.reset();
+                    key = watcher.poll(settle, TimeUnit.MILLISECONDS);
+                }
+                try {
+                    if(overflow) reload();
+                    else reload(changed);
+                } catch(IOException | RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch(InterruptedException | ClosedWatchServiceException e) {
+            return;
+        }
+    }
+
+    /**
+     * Helper method that reloads just the given files.
+     */
+    private synchronized void reload(ArrayList<Path> paths) throws IOException {
+        boolean changed = false;
+        for(Path p : paths)
+            if(kindOf(p) != null) changed |= refresh(p);
+        if(changed) swap();
+    }
+
+    /**
+     * Helper method that rereads a single file, reusing the parts of it that
+     * haven't changed.
+     *
+     * @return true if anything in it changed
+     */
+    private boolean refresh(Path p) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(p);
+        } catch(NoSuchFileException e) {
+            return sources.remove(p) != null;
+        }
+        Source old = sources.get(p);
+        long fp = Fingerprint.of(bytes);
+        if(old != null && old.fingerprint == fp) return false;
+        String text = new String(bytes, Charset.defaultCharset());
+        Source s = new Source(fp);
+        String kind = kindOf(p);
+        if(kind.equals("waypoint")) parseWaypoints(text, old, s);
+        else parseScenarios(text, kind.equals("scenariox"), old, s);
+        sources.put(p, s);
+        return true;
+    }
+
+    /**
+     * Helper method that splits a Scenario file or chain into Scenarios,
+     * following the same rules as ScenarioCompressor.decompressLine().
+     */
+    private void parseScenarios(String text, boolean chain, Source old,
+            Source s) {
+        ArrayList<String> chunk = new ArrayList<>();
+        boolean content = false;
+        for(String line : text.split("\r\n|\r|\n")) {
+            String tmp = line.trim();
+            if(chain && tmp.contains("#!") && content) {
+                addScenario(chunk, old, s);
+                chunk.clear();
+                content = false;
+            } else if(!tmp.isEmpty()) {
+                chunk.add(tmp);
+                content = true;
+            }
+        }
+        if(!chain && content) addScenario(chunk, old, s);
+    }
+
+    /**
+     * Helper method that adds the Scenario made from the given lines to the
+     * Source. The lines are only parsed if their text has changed; otherwise
+     * the old Scenario is reused.
+     */
+    private static void addScenario(ArrayList<String> chunk, Source old,
+            Source s) {
+        Fingerprint f = new Fingerprint();
+        for(String line : chunk)
+            f.add(line);
+        long fp = f.get();
+        Scenario sc = old == null ? null : old.scenarios.get(fp);
+        if(sc == null) {
+            ScenarioParser parser = new ScenarioParser();
+            for(String line : chunk)
+                parser.parseLine(line);
+            sc = parser.build();
+        }
+        if(sc.getName() == null && sc.getArgs().length < 1) return;
+        s.scenarios.put(fp, sc);
+        s.order.add(sc);
+    }
+
+    /**
+     * Helper method that reads each Waypoint line, reusing the old Waypoint if
+     * the line hasn't changed.
+     */
+    private static void parseWaypoints(String text, Source old, Source s) {
+        s.waypointFile = true;
+        for(String line : text.split("\r\n|\r|\n")) {
+            String tmp = line.trim();
+            if(tmp.startsWith("#$")) s.inDegrees = tmp.contains("DEGREES");
+            else if(!(tmp.startsWith("#") || tmp.isEmpty())) {
+                long fp = Fingerprint.of(tmp);
+                Waypoint w = old == null ? null : old.waypoints.get(fp);
+                try {
+                    if(w == null) w = new Waypoint(tmp);
+                    s.waypoints.put(fp, w);
+                    s.order.add(w);
+                } catch(WaypointException | NumberFormatException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method that builds a new ScenarioCompressor and WaypointMap from
+     * every file, in file name order, and swaps them in.
+     */
+    private void swap() {
+        ArrayList<Scenario> scenarios = new ArrayList<>();
+        HashMap<String, Waypoint> waypoints = new HashMap<>();
+        boolean inDegrees = false, unitsSet = false;
+        for(Source s : sources.values()) {
+            if(s.waypointFile && !unitsSet) {
+                inDegrees = s.inDegrees;
+                unitsSet = true;
+            }
+            boolean convert = s.waypointFile && s.inDegrees != inDegrees;
+            for(Object o : s.order) {
+                if(o instanceof Scenario) scenarios.add((Scenario) o);
+                else {
+                    Waypoint w = (Waypoint) o;
+                    if(convert) w = convert(w, inDegrees);
+                    waypoints.put(w.getName(), w);
+                }
+            }
+        }
+        long version = current == null ? 1 : current.version + 1;
+        current = new Loaded(new ScenarioCompressor(scenarios),
+                new WaypointMap(waypoints, inDegrees), version);
+        for(Runnable r : listeners) {
+            try {
+                r.run();
+            } catch(RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Helper method that converts the angles of a {@link Waypoint} from
+     * radians to degrees, or from degrees to radians.
+     */
+    private static Waypoint convert(Waypoint w, boolean toDegrees) {
+        DoubleUnaryOperator f = toDegrees ? Math::toDegrees : Math::toRadians;
+        return new Waypoint(w.getName(), w.getX(), w.getY(), w.getZ(),
+                f.applyAsDouble(w.getHeading()), f.applyAsDouble(w.getRoll()),
+                f.applyAsDouble(w.getPitch()));
+    }
+
+    /**
+     * Helper method that works out which kind of file a path is, by its
+     * extension.
+     *
+     * @return "scenario", "scenariox", "waypoint", or null for anything else
+     */
+    private static String kindOf(Path p) {
+        String name = p.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if(dot == -1) return null;
+        String ext = name.substring(dot + 1);
+        if(ext.equals("scenario") || ext.equals("scenariox")
+                || ext.equals("waypoint"))
+            return ext;
+        return null;
+    }
+
+    /**
+     * What was last read from one file: the Scenarios or Waypoints in order,
+     * and each of them by fingerprint so the next read can reuse them.
+     */
+    static class Source {
+
+        final long fingerprint;
+        final ArrayList<Object> order = new ArrayList<>();
+        final HashMap<Long, Scenario> scenarios = new HashMap<>();
+        final HashMap<Long, Waypoint> waypoints = new HashMap<>();
+        boolean waypointFile = false;
+        boolean inDegrees = false;
+
+        Source(long fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * One swapped-in version of the directory.
+     */
+    static class Loaded {
+
+        final ScenarioCompressor scenarios;
+        final WaypointMap map;
+        final long version;
+
+        Loaded(ScenarioCompressor scenarios, WaypointMap map, long version) {
+            this.scenarios = scenarios;
+            this.map = map;
+            this.version = version;
+        }
+    }
+}
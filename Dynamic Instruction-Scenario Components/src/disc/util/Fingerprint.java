@@ -0,0 +1,206 @@
+package disc.util;
+
+/**
+ * Streaming 64-bit hash for fingerprinting DISC data. Values are added one at
+ * a time and get() gives the fingerprint of everything added so far, so a
+ * large structure can be fingerprinted without building a String of it.
+ * Strings are added with their length, so "ab" then "c" and "a" then "bc"
+ * fingerprint differently.
+ * <p>
+ * Fingerprints are meant for cache keys and spotting changes, not for
+ * security. The same data always gives the same fingerprint, on any JVM.
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public class Fingerprint {
+
+    static final long SEED = 0x2545F4914F6CDD1DL;
+    static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    long h = SEED;
+    long count = 0;
+
+    /**
+     * Adds a long to the fingerprint.
+     *
+     * @param v
+     *            The value to add
+     * @return This Fingerprint
+     */
+    public Fingerprint add(long v) {
+        h = Long.rotateLeft(h ^ mix(v), 29) * MULTIPLIER;
+        count++;
+        return this;
+    }
+
+    /**
+     * Adds an int to the fingerprint.
+     *
+     * @param v
+     *            The value to add
+     * @return This Fingerprint
+     */
+    public Fingerprint add(int v) {
+        return add((long) v);
+    }
+
+    /**
+     * Adds a boolean to the fingerprint.
+     *
+     * @param v
+     *            The value to add
+     * @return This Fingerprint
+     */
+    public Fingerprint add(boolean v) {
+        return add(v ? 1L : 0L);
+    }
+
+    /**
+     * Adds a double to the fingerprint. Every NaN counts as the same value.
+     *
+     * @param v
+     *            The value to add
+     * @return This Fingerprint
+     */
+    public Fingerprint add(double v) {
+        return add(Double.doubleToLongBits(v));
+    }
+
+    /**
+     * Adds a String to the fingerprint, four chars at a time. null counts as
+     * a different value to "".
+     *
+     * @param s
+     *            The String to add
+     * @return This Fingerprint
+     */
+    public Fingerprint add(String s) {
+        if(s == null) return add(-1L);
+        int n = s.length();
+        add((long) n);
+        int i = 0;
+        for(; i + 4 <= n; i += 4)
+            add((long) s.charAt(i) | (long) s.charAt(i + 1) << 16
+                    | (long) s.charAt(i + 2) << 32
+                    | (long) s.charAt(i + 3) << 48);
+        if(i < n) {
+            long v = 0;
+            for(int shift = 0; i < n; i++, shift += 16)
+                v |= (long) s.charAt(i) << shift;
+            add(v);
+        }
+        return this;
+    }
+
+    /**
+     * Adds each String of an array to the fingerprint, after its length.
+     *
+     * @param a
+     *            The Strings to add
+     * @return This Fingerprint
+     */
+    public Fingerprint add(String[] a) {
+        if(a == null) return add(-1L);
+        add((long) a.length);
+        for(String s : a)
+            add(s);
+        return this;
+    }
+
+    /**
+     * Adds part of a byte array to the fingerprint, eight bytes at a time.
+     *
+     * @param b
+     *            The array to read from
+     * @param off
+     *            Where to start reading
+     * @param len
+     *            How many bytes to read
+     * @return This Fingerprint
+     */
+    public Fingerprint add(byte[] b, int off, int len) {
+        add((long) len);
+        int end = off + len;
+        long v = 0;
+        int shift = 0;
+        for(int i = off; i < end; i++) {
+            v |= (b[i] & 0xFFL) << shift;
+            shift += 8;
+            if(shift == 64) {
+                add(v);
+                v = 0;
+                shift = 0;
+            }
+        }
+        if(shift > 0) add(v);
+        return this;
+    }
+
+    /**
+     * @return The fingerprint of everything added so far. More can still be
+     *         added afterwards.
+     */
+    public long get() {
+        return mix(h ^ count);
+    }
+
+    /**
+     * Starts over, as if nothing had been added.
+     */
+    public void reset() {
+        h = SEED;
+        count = 0;
+    }
+
+    /**
+     * Fingerprints a single String.
+     *
+     * @param s
+     *            The String to fingerprint
+     * @return Its fingerprint
+     */
+    public static long of(String s) {
+        return new Fingerprint().add(s).get();
+    }
+
+    /**
+     * Fingerprints a byte array.
+     *
+     * @param b
+     *            The bytes to fingerprint
+     * @return Their fingerprint
+     */
+    public static long of(byte[] b) {
+        return new Fingerprint().add(b, 0, b.length).get();
+    }
+
+    /**
+     * Scrambles a 64-bit value so that every bit of the result depends on
+     * every bit of the input. Summing mixed fingerprints gives a fingerprint
+     * of an unordered set.
+     *
+     * @param v
+     *            The value to scramble
+     * @return The scrambled value
+     */
+    public static long mix(long v) {
+        v ^= v >>> 33;
+        v *= 0xFF51AFD7ED558CCDL;
+        v ^= v >>> 33;
+        v *= 0xC4CEB9FE1A85EC53L;
+        v ^= v >>> 33;
+        return v;
+    }
+
+    /**
+     * Folds a fingerprint down to an int, for use as a hashCode().
+     *
+     * @param fingerprint
+     *            The fingerprint to fold
+     * @return The folded value
+     */
+    public static int fold(long fingerprint) {
+        return (int) (fingerprint ^ (fingerprint >>> 32));
+    }
+}
@@ -1,256 +1,475 @@
-package disc.util;
-
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.Scanner;
-import disc.data.Scenario;
-
-/**
- * Class for building an array of {@link Scenario}s and chaining them together
- * into a single file; or inversely deconstructing such chain into an array of
- * Scenarios and grabbing them as a traditional array or Queue data structure.
- * 
- * @author Liam Williams
- * @version 0.3.3
- */
-public class ScenarioCompressor {
-
-    ArrayList<Scenario> scenarios;
-
-    /**
-     * Standard constructor to build a {@link ScenarioCompressor}
-     */
-    public ScenarioCompressor() {
-        scenarios = new ArrayList<Scenario>(0);
-    }
-
-    /**
-     * Constructor that immediately reads the given file into memory.
-     * 
-     * @param input
-     *            The input file to be read
-     * @throws FileNotFoundException
-     *             If no such file exists
-     */
-    public ScenarioCompressor(File input) throws FileNotFoundException {
-        scenarios = new ArrayList<Scenario>(0);
-        this.decompress(input);
-    }
-
-    /**
-     * Constructor that immediately reads the given String into internal data.
-     * 
-     * @param input
-     *            The input String to be read
-     */
-    public ScenarioCompressor(String input) {
-        scenarios = new ArrayList<Scenario>(0);
-        this.decompress(input);
-    }
-
-    /**
-     * Constructor primarily for the clone() method
-     */
-    public ScenarioCompressor(ArrayList<Scenario> scenarios) {
-        this.scenarios = scenarios;
-    }
-
-    /**
-     * Compresses the internal array of {@link Scenario}s into a file
-     * 
-     * @param output
-     *            The file to be chained into. Overwrites
-     * @throws FileNotFoundException
-     *             If the file cannot be created or accessed
-     */
-    public void compress(File output) throws FileNotFoundException {
-        PrintWriter op = new PrintWriter(output);
-        op.write(this.toString());
-        op.close();
-    }
-
-    /**
-     * Adds the {@link Scenario} to the {@link ScenarioCompressor}'s internal
-     * array.
-     * 
-     * @param toAdd
-     *            the Scenario to add
-     */
-    public void addScenario(Scenario toAdd) {
-        scenarios.add(toAdd);
-    }
-
-    /**
-     * Empties the internal {@link Scenario} array.
-     */
-    public void clearScenarioList() {
-        scenarios = new ArrayList<Scenario>(0);
-    }
-
-    /**
-     * Decompresses the given file into the internal array. Will clear the
-     * internal array.
-     * 
-     * @param input
-     *            The file to be decompressed
-     * @throws FileNotFoundException
-     *             If the file does not exist or cannot be accessed
-     */
-    public void decompress(Scanner scn) {
-        this.clearScenarioList();
-        StringBuilder sb = new StringBuilder("");
-        while(scn.hasNextLine()) {
-            String tmp = scn.nextLine().trim();
-            if(tmp.contains("#!") && !sb.toString().isEmpty()) {
-                scenarios.add(new Scenario(sb.toString()));
-                sb = new StringBuilder("");
-            } else if(tmp.isEmpty()) ;
-            else sb.append(tmp + "\r\n");
-        }
-        scn.close();
-        this.clean();
-    }
-
-    /**
-     * "Decompresses" the given file into the internal array. Will clear the
-     * internal array.
-     * 
-     * @param input
-     *            The file to be read
-     * @throws FileNotFoundException
-     *             If the file does not exist or cannot be accessed
-     */
-    public void decompress(File input) throws FileNotFoundException {
-        decompress(new Scanner(input));
-    }
-
-    /**
-     * "Decompresses" the given String into the internal array. Will clear the
-     * internal array.
-     * 
-     * @param input
-     *            The String to be read
-     */
-    public void decompress(String input) {
-        decompress(new Scanner(input));
-    }
-
-    /**
-     * @return a standard array copy of the internal {@link Scenario} array
-     */
-    public Scenario[] getScenarios() {
-        return scenarios.stream().toArray(Scenario[]::new);
-    }
-
-    /**
-     * Searches the array of {@link Scenario}s for the first match by name.
-     * 
-     * @param name
-     *            The name to match with a Scenario
-     * @return The found Scenario, or null if it wasn't found
-     */
-    public Scenario getScenarioByName(String name) {
-        return Arrays.stream(this.getScenarios())
-                     .filter(s -> s.getName().equals(name))
-                     .findFirst()
-                     .orElse(null);
-    }
-
-    /**
-     * Searches the array of {@link Scenario}s for the first match by exact arg
-     * array.
-     * 
-     * @param args
-     *            The exact arg array to match with a Scenario
-     * @return The found Scenario, or null if it wasn't found
-     */
-    public Scenario getScenarioByExactArg(String[] args) {
-        return Arrays.stream(this.getScenarios())
-                     .filter(s -> Arrays.equals(s.getArgs(), args))
-                     .findFirst()
-                     .orElse(null);
-    }
-
-    /**
-     * Seaches the array of {@link Scenario}s for the first match by containment
-     * of the given args.
-     * 
-     * @param args
-     *            The arg array to check for containment in any Scenario
-     * @return The found Scenario, or null if it wasn't found.
-     */
-    public Scenario getScenarioByArgContainment(String[] args) {
-        for(Scenario s : this.getScenarios()) {
-            int i = 0;
-            for(String str : s.getArgs()) {
-                if(Arrays.stream(args)
-                         .filter(string -> string.equals(str))
-                         .findFirst()
-                         .orElse(null) != null)
-                    i++;
-            }
-            if(i == args.length) return s;
-        }
-        return null;
-    }
-
-    /**
-     * @return a Queue array built from the internal {@link Scenario} array
-     */
-    public Queue<Scenario> getScenariosAsQueue() {
-        Queue<Scenario> toReturn = new LinkedList<Scenario>();
-        for(Scenario s : this.getScenarios())
-            toReturn.add(s);
-        return toReturn;
-    }
-
-    /**
-     * Removes any empty scenarios that may have been accidentally added during
-     * parsing of a file.
-     */
-    private void clean() {
-        Scenario tmp = null;
-        tmp = this.getScenarioByName(null);
-        if(tmp != null && tmp.getArgs().length < 1) {
-            scenarios.remove(tmp);
-            this.clean();
-        }
-    }
-
-    /**
-     * @return The String representation of the {@link Scenario}s in this
-     *         object, as they would be seen in a file.
-     */
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder("");
-        sb.append("#! BEGIN SCENARIO CHAIN\r\n");
-        Scenario[] scene = this.getScenarios();
-        for(Scenario s : scene) {
-            sb.append(s.toString() + "\r\n");
-            sb.append("#!\r\n");
-        }
-        sb.append("#END SCENARIO CHAIN");
-        return sb.toString();
-    }
-
-    @Override
-    public int hashCode() {
-        Scenario[] op = this.getScenarios();
-        long toOut = 0;
-        for(Scenario s : op)
-            toOut += s.hashCode();
-        return (int) Math.pow(toOut, (1 / op.length));
-    }
-
-    @Override
-    public ScenarioCompressor clone() {
-        return new ScenarioCompressor(this.scenarios);
-    }
-
-}
+package disc.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Queue;
+import java.util.Scanner;
+import java.util.function.UnaryOperator;
+
+import disc.data.Instruction;
+import disc.data.InstructionChunkStore;
+import disc.data.InstructionPool;
+import disc.data.Scenario;
+import disc.data.ScenarioParser;
+import disc.metrics.Histogram;
+import disc.metrics.Metrics;
+
+/**
+ * Class for building an array of {@link Scenario}s and chaining them together
+ * into a single file; or inversely deconstructing such chain into an array of
+ * Scenarios and grabbing them as a traditional array or Queue data structure.
+ * 
+ * @author Liam Williams
+ * @version 0.3.17
+ */
+public class ScenarioCompressor {
+
+    static final Histogram DECOMPRESS = Metrics
+            .histogram("scenarios.decompress");
+
+    ArrayList<Scenario> scenarios;
+    InstructionPool pool = new InstructionPool();
+    ScenarioParser parser = new ScenarioParser(pool);
+    InstructionChunkStore store = null;
+    volatile HashMap<String, Scenario> index = null;
+
+    /**
+     * Standard constructor to build a {@link ScenarioCompressor}
+     */
+    public ScenarioCompressor() {
+        scenarios = new ArrayList<Scenario>(0);
+    }
+
+    /**
+     * Constructor that immediately reads the given file into memory.
+     * 
+     * @param input
+     *            The input file to be read
+     * @throws FileNotFoundException
+     *             If no such file exists
+     */
+    public ScenarioCompressor(File input) throws FileNotFoundException {
+        scenarios = new ArrayList<Scenario>(0);
+        this.decompress(input);
+    }
+
+    /**
+     * Constructor that immediately reads the given String into internal data.
+     * 
+     * @param input
+     *            The input String to be read
+     */
+    public ScenarioCompressor(String input) {
+        scenarios = new ArrayList<Scenario>(0);
+        this.decompress(input);
+    }
+
+    /**
+     * Constructor primarily for the clone() method
+     */
+    public ScenarioCompressor(ArrayList<Scenario> scenarios) {
+        this.scenarios = scenarios;
+    }
+
+    /**
+     * Compresses the internal array of {@link Scenario}s into a file
+     * 
+     * @param output
+     *            The file to be chained into. Overwrites
+     * @throws FileNotFoundException
+     *             If the file cannot be created or accessed
+     * @throws IOException
+     *             If writing the file fails part way
+     */
+    public void compress(File output) throws IOException {
+        PrintWriter op = new PrintWriter(output);
+        try {
+            writeTo(op);
+        } finally {
+            op.close();
+        }
+        if(op.checkError())
+            throw new IOException("Could not write " + output.getPath());
+    }
+
+    /**
+     * Adds the {@link Scenario} to the {@link ScenarioCompressor}'s internal
+     * array.
+     * 
+     * @param toAdd
+     *            the Scenario to add
+     */
+    public void addScenario(Scenario toAdd) {
+        index = null;
+        scenarios.add(stored(toAdd));
+    }
+
+    /**
+     * Replaces the first {@link Scenario} with the same name as the given one,
+     * or adds it to the end if there isn't one.
+     * 
+     * @param toPut
+     *            the Scenario to put
+     */
+    public void replaceScenario(Scenario toPut) {
+        toPut = stored(toPut);
+        index = null;
+        for(int i = 0; i < scenarios.size(); i++) {
+            String name = scenarios.get(i).getName();
+            if(name != null && name.equals(toPut.getName())) {
+                scenarios.set(i, toPut);
+                return;
+            }
+        }
+        scenarios.add(toPut);
+    }
+
+    /**
+     * Removes the first {@link Scenario} with the given name.
+     * 
+     * @param name
+     *            the name of the Scenario to remove
+     * @return true if a Scenario was removed
+     */
+    public boolean removeScenario(String name) {
+        for(int i = 0; i < scenarios.size(); i++) {
+            String n = scenarios.get(i).getName();
+            if(n != null && n.equals(name)) {
+                index = null;
+                scenarios.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The pool lasts as long as the internal array: clearScenarioList(), and
+     * so decompress(), empty it as well.
+     * 
+     * @return the {@link InstructionPool} shared by every {@link Scenario}
+     *         this ScenarioCompressor decompresses
+     */
+    public InstructionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Stores every {@link Scenario}, now and from then on, in the given
+     * {@link InstructionChunkStore}, so that runs of Instructions repeated
+     * across Scenarios are only kept once. Several ScenarioCompressors can
+     * share one store.
+     * 
+     * @param store
+     *            The store to use, or null to stop chunking new Scenarios
+     */
+    public void setChunkStore(InstructionChunkStore store) {
+        this.store = store;
+        if(store != null) {
+            index = null;
+            scenarios.replaceAll(store::store);
+        }
+    }
+
+    /**
+     * @return the {@link InstructionChunkStore} in use, or null if there isn't
+     *         one
+     */
+    public InstructionChunkStore getChunkStore() {
+        return store;
+    }
+
+    /**
+     * Replaces every {@link Scenario} with the result of the given function,
+     * in place, keeping the name index up to date.
+     * 
+     * @param op
+     *            The function to apply to each Scenario
+     */
+    void replaceAll(UnaryOperator<Scenario> op) {
+        scenarios.replaceAll(s -> stored(op.apply(s)));
+        if(index != null) index = buildIndex();
+    }
+
+    /**
+     * Helper method that puts a {@link Scenario} in the chunk store, if there
+     * is one.
+     */
+    private Scenario stored(Scenario s) {
+        return store == null ? s : store.store(s);
+    }
+
+    /**
+     * Empties the internal {@link Scenario} array and the
+     * {@link InstructionPool}. Scenarios already handed out keep their
+     * Instructions.
+     */
+    public void clearScenarioList() {
+        index = null;
+        scenarios = new ArrayList<Scenario>(0);
+        pool.clear();
+    }
+
+    /**
+     * Decompresses the given file into the internal array. Will clear the
+     * internal array.
+     * 
+     * @param input
+     *            The file to be decompressed
+     * @throws FileNotFoundException
+     *             If the file does not exist or cannot be accessed
+     */
+    public void decompress(Scanner scn) {
+        long start = Metrics.start();
+        this.clearScenarioList();
+        while(scn.hasNextLine())
+            decompressLine(scn.nextLine());
+        scn.close();
+        this.endDecompress();
+        DECOMPRESS.recordSince(start);
+    }
+
+    /**
+     * Reads a single line of a chain into the internal array, parsing each
+     * {@link Scenario} as its lines arrive. Lets a chain be read straight from
+     * a larger stream, such as a DISC file. Call endDecompress() after the
+     * last line.
+     * 
+     * @param line
+     *            The line to read
+     */
+    public void decompressLine(String line) {
+        String tmp = line.trim();
+        if(tmp.contains("#!") && parser.hasContent()) {
+            index = null;
+            scenarios.add(stored(parser.build()));
+        }
+        else parser.parseLine(tmp);
+    }
+
+    /**
+     * Finishes reading a chain given to decompressLine(). Anything after the
+     * last "#!" is dropped, and empty Scenarios are removed. Builds the name
+     * index, so lookups by name are quick straight away.
+     */
+    public void endDecompress() {
+        parser.reset();
+        this.clean();
+        index = buildIndex();
+    }
+
+    /**
+     * Links the chain: builds the name index and checks that every
+     * "control.call" {@link Instruction} names a {@link Scenario} in the
+     * chain. Subroutines are then looked up by name in constant time, and
+     * each one is shared by every Scenario that calls it.
+     * 
+     * @throws IllegalArgumentException
+     *             If a Scenario calls one that isn't in the chain
+     */
+    public void link() {
+        HashMap<String, Scenario> idx = buildIndex();
+        for(Scenario s : scenarios) {
+            int n = s.getNumberOfInstructions();
+            for(int i = 0; i < n; i++) {
+                String callee = Instruction.calleeOf(s.getInstruction(i));
+                if(callee != null && !idx.containsKey(callee))
+                    throw new IllegalArgumentException("Scenario \""
+                            + s.getName() + "\" calls unknown Scenario \""
+                            + callee + "\"");
+            }
+        }
+        index = idx;
+    }
+
+    /**
+     * Helper method that maps each name to the first {@link Scenario} with
+     * it.
+     */
+    private HashMap<String, Scenario> buildIndex() {
+        HashMap<String, Scenario> idx = new HashMap<>(scenarios.size() * 2);
+        for(Scenario s : scenarios)
+            if(s.getName() != null) idx.putIfAbsent(s.getName(), s);
+        return idx;
+    }
+
+    /**
+     * "Decompresses" the given file into the internal array. Will clear the
+     * internal array.
+     * 
+     * @param input
+     *            The file to be read
+     * @throws FileNotFoundException
+     *             If the file does not exist or cannot be accessed
+     */
+    public void decompress(File input) throws FileNotFoundException {
+        decompress(new Scanner(input));
+    }
+
+    /**
+     * "Decompresses" the given String into the internal array. Will clear the
+     * internal array.
+     * 
+     * @param input
+     *            The String to be read
+     */
+    public void decompress(String input) {
+        decompress(new Scanner(input));
+    }
+
+    /**
+     * @return a standard array copy of the internal {@link Scenario} array
+     */
+    public Scenario[] getScenarios() {
+        return scenarios.toArray(new Scenario[scenarios.size()]);
+    }
+
+    /**
+     * Searches the array of {@link Scenario}s for the first match by name,
+     * using the name index if there is one.
+     * 
+     * @param name
+     *            The name to match with a Scenario
+     * @return The found Scenario, or null if it wasn't found
+     */
+    public Scenario getScenarioByName(String name) {
+        HashMap<String, Scenario> idx = index;
+        if(idx != null) return idx.get(name);
+        for(Scenario s : scenarios)
+            if(s.getName() != null && s.getName().equals(name)) return s;
+        return null;
+    }
+
+    /**
+     * Searches the array of {@link Scenario}s for the first match by exact arg
+     * array.
+     * 
+     * @param args
+     *            The exact arg array to match with a Scenario
+     * @return The found Scenario, or null if it wasn't found
+     */
+    public Scenario getScenarioByExactArg(String[] args) {
+        for(Scenario s : scenarios)
+            if(Arrays.equals(s.getArgs(), args)) return s;
+        return null;
+    }
+
+    /**
+     * Seaches the array of {@link Scenario}s for the first match by containment
+     * of the given args.
+     * 
+     * @param args
+     *            The arg array to check for containment in any Scenario
+     * @return The found Scenario, or null if it wasn't found.
+     */
+    public Scenario getScenarioByArgContainment(String[] args) {
+        for(Scenario s : scenarios) {
+            int i = 0;
+            for(String str : s.getArgs()) {
+                if(Arrays.stream(args)
+                         .filter(string -> string.equals(str))
+                         .findFirst()
+                         .orElse(null) != null)
+                    i++;
+            }
+            if(i == args.length) return s;
+        }
+        return null;
+    }
+
+    /**
+     * @return a Queue array built from the internal {@link Scenario} array
+     */
+    public Queue<Scenario> getScenariosAsQueue() {
+        return new ArrayDeque<Scenario>(scenarios);
+    }
+
+    /**
+     * Removes any empty scenarios that may have been accidentally added during
+     * parsing of a file.
+     */
+    private void clean() {
+        scenarios.removeIf(s -> s.getName() == null && s.getArgs().length < 1);
+    }
+
+    /**
+     * @return The String representation of the {@link Scenario}s in this
+     *         object, as they would be seen in a file.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("");
+        try {
+            writeTo(sb);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends the {@link Scenario}s in this object as they would be seen in a
+     * file, one Scenario at a time, without building the whole chain in
+     * memory first.
+     * 
+     * @param out
+     *            The Appendable to write to
+     * @throws IOException
+     *             If the Appendable cannot be written to
+     */
+    public void writeTo(Appendable out) throws IOException {
+        out.append("#! BEGIN SCENARIO CHAIN\r\n");
+        for(Scenario s : scenarios) {
+            s.writeTo(out);
+            out.append("\r\n");
+            out.append("#!\r\n");
+        }
+        out.append("#END SCENARIO CHAIN");
+    }
+
+    /**
+     * Streams the same text as toString() to the given channel. Does not
+     * close the channel.
+     * 
+     * @param out
+     *            The channel to write to
+     * @throws IOException
+     *             If the channel cannot be written to
+     * @see TextChannels
+     */
+    public void writeTo(WritableByteChannel out) throws IOException {
+        TextChannels.writeTo(this::writeTo, out);
+    }
+
+    /**
+     * Returns a 64-bit fingerprint of each {@link Scenario}'s fingerprint, in
+     * order.
+     * 
+     * @return the fingerprint of the chain
+     */
+    public long fingerprint() {
+        Fingerprint f = new Fingerprint().add(scenarios.size());
+        for(Scenario s : scenarios)
+            f.add(s.fingerprint());
+        return f.get();
+    }
+
+    @Override
+    public int hashCode() {
+        return Fingerprint.fold(fingerprint());
+    }
+
+    @Override
+    public ScenarioCompressor clone() {
+        return new ScenarioCompressor(new ArrayList<Scenario>(this.scenarios));
+    }
+
+}
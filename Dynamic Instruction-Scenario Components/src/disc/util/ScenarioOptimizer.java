@@ -0,0 +1,202 @@
+package disc.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import disc.data.Instruction;
+import disc.data.Instruction.InstructionType;
+import disc.data.Scenario;
+
+/**
+ * Optional pass that strips redundant {@link Instruction}s out of
+ * {@link Scenario}s before they are run, so fewer calls reach the hardware.
+ * Each Instruction is fed through a list of {@link PeepholeRule}s along with
+ * the Instructions kept so far, and a rule can drop it, or drop it along with
+ * the end of what was kept. Because rules only ever look at the end of what
+ * was kept, removing a pair can bring two more redundant Instructions
+ * together, and they are caught as well.
+ * <p>
+ * The default rules only drop Instructions that cannot change what a
+ * Scenario does:
+ * <ul>
+ * <li>Instructions that could not be parsed, which would fail if run.
+ * <li>A "control.set" the same as the one straight before it.
+ * <li>A "nav.goto" the same as the one straight before it.
+ * <li>A "start" straight followed by the "stop" of the same name.
+ * </ul>
+ * "Straight before" means next to each other in the Scenario. Jumps only land
+ * on labels, so nothing can run between two neighbouring Instructions that
+ * aren't labels. Instructions that store a "return" variable are never
+ * dropped as repeats.
+ *
+ * @author Liam Williams
+ * @version 0.1.1
+ */
+public class ScenarioOptimizer {
+
+    List<PeepholeRule> rules = new ArrayList<>();
+    AtomicLong removed = new AtomicLong();
+
+    /**
+     * Creates an optimizer with the default rules.
+     */
+    public ScenarioOptimizer() {
+        this(dropInvalid(), dropRepeatedControlSet(),
+                dropRepeatedCommand("nav", "goto"), dropEmptyDelimiters());
+    }
+
+    /**
+     * Creates an optimizer with the given rules, which are tried in order.
+     *
+     * @param rules
+     *            The rules to use
+     */
+    public ScenarioOptimizer(PeepholeRule... rules) {
+        this.rules.addAll(Arrays.asList(rules));
+    }
+
+    /**
+     * Adds a rule, to be tried after the others.
+     *
+     * @param rule
+     *            The rule to add
+     */
+    public void addRule(PeepholeRule rule) {
+        rules.add(rule);
+    }
+
+    /**
+     * Returns an optimized copy of the given {@link Scenario}, or the same
+     * Scenario if nothing could be removed.
+     *
+     * @param s
+     *            The Scenario to optimize
+     * @return The optimized Scenario
+     */
+    public Scenario optimize(Scenario s) {
+        int n = s.getNumberOfInstructions();
+        ArrayList<Instruction> kept = new ArrayList<>(n);
+        for(int i = 0; i < n; i++) {
+            Instruction next = s.getInstruction(i);
+            boolean consumed = false;
+            for(PeepholeRule r : rules) {
+                if(r.rewrite(kept, next)) {
+                    consumed = true;
+                    break;
+                }
+            }
+            if(!consumed) kept.add(next);
+        }
+        if(kept.size() == n) return s;
+        removed.addAndGet(n - kept.size());
+        return new Scenario(s.getName(), s.getArgs(),
+                kept.toArray(new Instruction[kept.size()]));
+    }
+
+    /**
+     * Optimizes every {@link Scenario} in the given
+     * {@link ScenarioCompressor}, in place.
+     *
+     * @param sc
+     *            The ScenarioCompressor to optimize
+     * @return The number of Instructions removed
+     */
+    public long optimize(ScenarioCompressor sc) {
+        long before = removed.get();
+        sc.replaceAll(this::optimize);
+        return removed.get() - before;
+    }
+
+    /**
+     * @return The number of Instructions this optimizer has removed so far
+     */
+    public long getRemoved() {
+        return removed.get();
+    }
+
+    /**
+     * A rewrite rule for {@link ScenarioOptimizer}. Rules must only remove
+     * Instructions that cannot change what the Scenario does.
+     */
+    public interface PeepholeRule {
+
+        /**
+         * Looks at the next {@link Instruction} and the end of the ones kept
+         * so far.
+         *
+         * @param kept
+         *            The Instructions kept so far. The rule may remove
+         *            Instructions from the end of it.
+         * @param next
+         *            The next Instruction
+         * @return true if next should be dropped, false to keep it
+         */
+        boolean rewrite(List<Instruction> kept, Instruction next);
+    }
+
+    /**
+     * @return A rule that drops Instructions that could not be parsed
+     */
+    public static PeepholeRule dropInvalid() {
+        return (kept, next) -> next.getT() == null;
+    }
+
+    /**
+     * @return A rule that drops a "control.set" the same as the one straight
+     *         before it
+     */
+    public static PeepholeRule dropRepeatedControlSet() {
+        return (kept, next) -> next.getT() == InstructionType.CONTROL_STATE
+                && next.getArgs()[0].equals("set") && isRepeat(kept, next);
+    }
+
+    /**
+     * Makes a rule that drops a command to the given target and method that
+     * is the same as the one straight before it.
+     *
+     * @param target
+     *            The target of the command (eg nav)
+     * @param method
+     *            The method of the command (eg goto)
+     * @return The rule
+     */
+    public static PeepholeRule dropRepeatedCommand(String target,
+            String method) {
+        return (kept, next) -> next.getT() == InstructionType.COMMAND
+                && target.equals(next.getTarget())
+                && method.equals(next.getArgs()[0]) && isRepeat(kept, next);
+    }
+
+    /**
+     * @return A rule that drops a "start" straight followed by the "stop" of
+     *         the same name
+     */
+    public static PeepholeRule dropEmptyDelimiters() {
+        return (kept, next) -> {
+            if(next.getT() != InstructionType.DELIMITER || kept.isEmpty()
+                    || !next.getArgs()[0].equals("stop"))
+                return false;
+            Instruction last = kept.get(kept.size() - 1);
+            if(last.getT() != InstructionType.DELIMITER
+                    || !last.getArgs()[0].equals("start")
+                    || !last.getArgs()[1].equals(next.getArgs()[1]))
+                return false;
+            kept.remove(kept.size() - 1);
+            return true;
+        };
+    }
+
+    /**
+     * Helper method that checks whether an Instruction is the same as the
+     * last one kept, and doesn't store a return variable.
+     */
+    private static boolean isRepeat(List<Instruction> kept, Instruction next) {
+        if(kept.isEmpty() || !kept.get(kept.size() - 1).equals(next))
+            return false;
+        for(String a : next.getArgs())
+            if(Instruction.returnVarOf(a) != null) return false;
+        return true;
+    }
+}
@@ -0,0 +1,63 @@
+package disc.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Streams the text form of DISC data to a channel, for the writeTo() methods
+ * of Scenario, WaypointMap, ScenarioCompressor, and DISCBuilder. The text is
+ * encoded with the platform charset, as a PrintWriter would, through a
+ * fixed-size buffer, so a large file never has to be built up as a String.
+ * Like a PrintWriter, characters the charset can't encode are written as its
+ * replacement, usually '?', rather than failing the write.
+ *
+ * @author Liam Williams
+ * @version 0.1.1
+ */
+public final class TextChannels {
+
+    static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Something that can write its text form to an Appendable.
+     */
+    @FunctionalInterface
+    public interface Text {
+
+        /**
+         * Writes the text to the given Appendable.
+         *
+         * @param out
+         *            The Appendable to write to
+         * @throws IOException
+         *             If the Appendable cannot be written to
+         */
+        void writeTo(Appendable out) throws IOException;
+    }
+
+    private TextChannels() {}
+
+    /**
+     * Writes the given text to a channel. Does not close the channel.
+     *
+     * @param text
+     *            The text to write
+     * @param out
+     *            The channel to write to
+     * @throws IOException
+     *             If the channel cannot be written to
+     */
+    public static void writeTo(Text text, WritableByteChannel out)
+            throws IOException {
+        Writer w = Channels.newWriter(out, Charset.defaultCharset()
+                .newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE),
+                BUFFER_SIZE);
+        text.writeTo(w);
+        w.flush();
+    }
+}
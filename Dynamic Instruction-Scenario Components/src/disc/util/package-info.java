@@ -1,5 +1,5 @@
-/**
- * Utilities for saving multiple Scenarios with/without a WaypointMap to a file,
- * and reading it back.
- */
+/**
+ * Utilities for saving multiple Scenarios with/without a WaypointMap to a file,
+ * and reading it back.
+ */
 package disc.util;
\ No newline at end of file
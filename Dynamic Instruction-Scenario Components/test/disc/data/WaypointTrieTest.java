@@ -0,0 +1,119 @@
+package disc.data;
+
+/**
+ * Checks that removing from a {@link WaypointTrie} pulls leaves and collision
+ * nodes back up correctly. "Aa" and "BB" have the same String hash, so they
+ * always share a collision node. Run with the main method; throws an
+ * AssertionError on the first failure.
+ *
+ * @author Liam Williams
+ * @version 0.1.0
+ */
+public class WaypointTrieTest {
+
+    public static void main(String[] args) {
+        collisionNodeLeftAloneAtRoot();
+        collisionNodeShrinksToLeaf();
+        collisionNodePulledUpFromDeep();
+        concurrentMapRemove();
+        System.out.println("WaypointTrieTest passed");
+    }
+
+    /**
+     * Removing the only other entry leaves the collision node as the only
+     * child of the root.
+     */
+    static void collisionNodeLeftAloneAtRoot() {
+        WaypointTrie t = WaypointTrie.EMPTY.put("Aa", at(1)).put("BB", at(2))
+                .put("x", at(3)).remove("x");
+        check(t.size == 2, "size after removing x");
+        check(t.get("Aa").getX() == 1 && t.get("BB").getX() == 2,
+                "colliding names kept");
+        check(t.get("x") == null, "x removed");
+        check(count(t) == 2, "iteration after removing x");
+    }
+
+    /**
+     * Removing one of two colliding names leaves a lone leaf, and removing
+     * that empties the trie.
+     */
+    static void collisionNodeShrinksToLeaf() {
+        WaypointTrie t = WaypointTrie.EMPTY.put("Aa", at(1)).put("BB", at(2))
+                .put("x", at(3));
+        t = t.remove("Aa");
+        check(t.size == 2 && t.get("BB").getX() == 2 && t.get("Aa") == null,
+                "BB kept after removing Aa");
+        t = t.remove("BB").remove("x");
+        check(t.size == 0 && count(t) == 0, "empty after removing all");
+    }
+
+    /**
+     * A name sharing the low bits of the collision node's hash pushes it
+     * several levels down; removing that name pulls it back up to the root.
+     */
+    static void collisionNodePulledUpFromDeep() {
+        String deep = sharingLowBits("Aa", 15);
+        WaypointTrie t = WaypointTrie.EMPTY.put("Aa", at(1)).put("BB", at(2))
+                .put(deep, at(3));
+        check(t.size == 3 && t.get(deep).getX() == 3, "deep name stored");
+        WaypointTrie r = t.remove(deep);
+        check(r.size == 2 && r.get("Aa").getX() == 1
+                && r.get("BB").getX() == 2 && r.get(deep) == null,
+                "collision node pulled up");
+        r = t.remove("Aa");
+        check(r.size == 2 && r.get("BB").getX() == 2 && r.get(deep).getX() == 3,
+                "leaf left from collision node kept beside deep name");
+        check(t.size == 3 && t.get("Aa").getX() == 1, "old trie unchanged");
+    }
+
+    /**
+     * The same removal through {@link ConcurrentWaypointMap}.
+     */
+    static void concurrentMapRemove() {
+        ConcurrentWaypointMap m = new ConcurrentWaypointMap();
+        m.addWaypoint(new Waypoint("Aa", 1, 0, 0, 0, 0, 0));
+        m.addWaypoint(new Waypoint("BB", 2, 0, 0, 0, 0, 0));
+        m.addWaypoint(new Waypoint("x", 3, 0, 0, 0, 0, 0));
+        m.removeWaypoint("x");
+        check(m.get("Aa") != null && m.get("BB") != null
+                && m.get("x") == null, "ConcurrentWaypointMap remove");
+    }
+
+    /**
+     * Helper method that finds a name whose trie hash shares the given number
+     * of low bits with another name's, but isn't equal to it.
+     */
+    private static String sharingLowBits(String name, int bits) {
+        int mask = (1 << bits) - 1;
+        int h = spread(name);
+        for(int i = 0;; i++) {
+            String n = "k" + i;
+            int hn = spread(n);
+            if(hn != h && (hn & mask) == (h & mask)) return n;
+        }
+    }
+
+    /**
+     * Helper method that spreads a name's hash the same way WaypointTrie
+     * does.
+     */
+    private static int spread(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static Waypoint at(double x) {
+        return new Waypoint("", x, 0, 0, 0, 0, 0);
+    }
+
+    private static int count(WaypointTrie t) {
+        int n = 0;
+        for(Waypoint w : t)
+            if(w != null) n++;
+        return n;
+    }
+
+    private static void check(boolean ok, String what) {
+        if(!ok) throw new AssertionError(what);
+    }
+}